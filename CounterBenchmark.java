@@ -0,0 +1,1055 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
+
+/**
+ * A few rough measurements for the CounterExample, in the same spirit as
+ * GridBenchmark: not proper microbenchmarks, but good enough to see whether
+ * a change made things a lot better or a lot worse. Run it with the name of
+ * the benchmark, e.g. {@code java CounterBenchmark contention}.
+ */
+class CounterBenchmark
+{
+	/**
+	 * This is how you would make the counter thread-safe the easy way: lock
+	 * for every change. Only used to compare against the Counter.
+	 */
+	static private class SynchronizedCounter
+	{
+		private final int min;
+		private final int max;
+		private int value;
+
+		public SynchronizedCounter(int min, int max)
+		{
+			this.min = min;
+			this.max = max;
+		}
+
+		public synchronized void increment()
+		{
+			if (value < max)
+				value++;
+		}
+
+		public synchronized void decrement()
+		{
+			if (value > min)
+				value--;
+		}
+
+		public synchronized int getValue()
+		{
+			return value;
+		}
+	}
+
+	/**
+	 * Something that increments or decrements, to run either counter with
+	 * the same code.
+	 */
+	static private interface Operation
+	{
+		void apply(boolean up);
+
+		int getValue();
+	}
+
+	/**
+	 * Something each thread does on its own, e.g. with its own counter.
+	 */
+	static private interface ThreadOperation
+	{
+		void apply(int thread, SplittableRandom random);
+	}
+
+	/**
+	 * The way models used to notify their observers, only used to compare
+	 * against EventSource.
+	 */
+	@SuppressWarnings("deprecation")
+	static private class ObservableModel extends java.util.Observable
+	{
+		public void change()
+		{
+			setChanged();
+			notifyObservers();
+		}
+	}
+
+	static private class EventModel extends EventSource<EventModel, Integer>
+	{
+		static private final Integer CHANGE = 1;
+
+		public void change()
+		{
+			notifyObservers(CHANGE);
+		}
+	}
+
+	/* Contention */
+
+	/**
+	 * Lets 1 up to 64 threads increment and decrement one counter at random
+	 * for a while, and reports the total number of changes per second.
+	 * Every thread also checks after each change that the value is within
+	 * bounds.
+	 */
+	static private void contention()
+	{
+		System.out.println("Contention, " + Runtime.getRuntime().availableProcessors() + " cores");
+
+		for (final int bound : new int[] { 5, 1000000 })
+		{
+			System.out.println("Counter(" + -bound + ", " + bound + ")");
+
+			for (int threads = 1; threads <= 64; threads *= 2)
+			{
+				final CounterExample.Counter counter = new CounterExample.Counter(-bound, bound);
+				final SynchronizedCounter baseline = new SynchronizedCounter(-bound, bound);
+
+				double lockFree = run(threads, bound, new Operation() {
+					@Override
+					public void apply(boolean up) {
+						if (up)
+							counter.increment();
+						else
+							counter.decrement();
+					}
+
+					@Override
+					public int getValue() {
+						return counter.getValue();
+					}
+				});
+
+				double locked = run(threads, bound, new Operation() {
+					@Override
+					public void apply(boolean up) {
+						if (up)
+							baseline.increment();
+						else
+							baseline.decrement();
+					}
+
+					@Override
+					public int getValue() {
+						return baseline.getValue();
+					}
+				});
+
+				System.out.printf("%3d threads  Counter %7.1f M ops/s  synchronized %7.1f M ops/s%n",
+					threads, lockFree, locked);
+			}
+		}
+	}
+
+	/**
+	 * Runs {@code operation} on {@code threads} threads for half a second,
+	 * and returns the number of million operations per second.
+	 */
+	static private double run(int threads, final int bound, final Operation operation)
+	{
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicBoolean outOfBounds = new AtomicBoolean();
+		final LongAdder operations = new LongAdder();
+		Thread[] workers = new Thread[threads];
+
+		for (int i = 0; i < threads; ++i)
+		{
+			final int seed = i;
+
+			workers[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					SplittableRandom random = new SplittableRandom(seed);
+					long count = 0;
+
+					while (running.get())
+					{
+						for (int j = 0; j < 1024; ++j)
+						{
+							operation.apply(random.nextBoolean());
+
+							int value = operation.getValue();
+
+							if (value < -bound || value > bound)
+								outOfBounds.set(true);
+						}
+
+						count += 1024;
+					}
+
+					operations.add(count);
+				}
+			});
+		}
+
+		long start = System.nanoTime();
+
+		for (Thread worker : workers)
+			worker.start();
+
+		try
+		{
+			Thread.sleep(500);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		running.set(false);
+
+		for (Thread worker : workers)
+		{
+			try
+			{
+				worker.join();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		long time = System.nanoTime() - start;
+
+		if (outOfBounds.get())
+			System.out.println("OUT OF BOUNDS");
+
+		return operations.sum() * 1e3 / time;
+	}
+
+	/* Notifications */
+
+	/**
+	 * Changes a counter with a label and two counting observers as fast as
+	 * it can from a background thread for a second, once with the observers
+	 * notified on every change and once with them added at 60 notifications
+	 * per second on the EDT. Reports the changes per second, how many
+	 * notifications the observers got and whether the label ended up
+	 * showing the right value.
+	 */
+	static private void burst() throws InterruptedException, InvocationTargetException
+	{
+		System.out.println("A burst of changes from another thread");
+
+		for (int rate : new int[] { 0, 60 })
+		{
+			final CounterExample.Counter counter = new CounterExample.Counter(-1000000000, 1000000000);
+			final JLabel label = new JLabel();
+			final LongAdder notifications = new LongAdder();
+
+			add(counter, rate, new EventSource.Observer<CounterExample.Counter, CounterExample.Counter.Change>() {
+				@Override
+				public void update(CounterExample.Counter source, CounterExample.Counter.Change change) {
+					label.setText(counter.getValueAsString());
+				}
+			});
+
+			for (int i = 0; i < 2; ++i)
+			{
+				add(counter, rate, new EventSource.Observer<CounterExample.Counter, CounterExample.Counter.Change>() {
+					@Override
+					public void update(CounterExample.Counter source, CounterExample.Counter.Change change) {
+						notifications.increment();
+					}
+				});
+			}
+
+			long changes = 0;
+			long start = System.nanoTime();
+			long end = start + 1000000000L;
+
+			while (System.nanoTime() < end)
+			{
+				for (int i = 0; i < 1024; ++i)
+					counter.increment();
+
+				changes += 1024;
+			}
+
+			long time = System.nanoTime() - start;
+
+			// Let the last notification through.
+			Thread.sleep(100);
+			SwingUtilities.invokeAndWait(new Runnable() {
+				@Override
+				public void run() {
+				}
+			});
+
+			System.out.printf("%-16s %7.1f M changes/s  %9d notifications  label %s%n",
+				rate == 0 ? "every change" : rate + " per second",
+				changes * 1e3 / time,
+				notifications.sum() / 2,
+				label.getText().equals(counter.getValueAsString()) ? "up to date" : "OUT OF DATE");
+		}
+	}
+
+	/**
+	 * Adds {@code observer} to be notified right away if {@code rate} is 0,
+	 * or {@code rate} times per second on the EDT otherwise.
+	 */
+	static private void add(CounterExample.Counter counter, int rate,
+		EventSource.Observer<CounterExample.Counter, CounterExample.Counter.Change> observer)
+	{
+		if (rate == 0)
+			counter.addObserver(observer);
+		else
+			counter.addEdtObserver(observer, rate);
+	}
+
+	/* Batches */
+
+	/**
+	 * Ingests the same random deltas into a counter with an observer, once
+	 * as single increments and decrements, once per delta with incrementBy()
+	 * and once in batches with apply(), and checks they all end up at the
+	 * same value.
+	 */
+	static private void batch()
+	{
+		System.out.println("Ingesting batches of 1000 deltas");
+
+		SplittableRandom random = new SplittableRandom(1);
+		int[][] batches = new int[1000][1000];
+
+		for (int[] batch : batches)
+			for (int i = 0; i < batch.length; ++i)
+				batch[i] = random.nextInt(-10, 11);
+
+		for (int round = 0; round < 3; ++round)
+		{
+			for (int mode = 0; mode < 3; ++mode)
+			{
+				CounterExample.Counter counter = new CounterExample.Counter(-500, 500);
+				final LongAdder notifications = new LongAdder();
+
+				counter.addObserver(new EventSource.Observer<CounterExample.Counter, CounterExample.Counter.Change>() {
+					@Override
+					public void update(CounterExample.Counter source, CounterExample.Counter.Change change) {
+						notifications.increment();
+					}
+				});
+
+				long start = System.nanoTime();
+
+				for (int[] batch : batches)
+				{
+					if (mode == 2)
+						counter.apply(batch);
+					else
+					{
+						for (int delta : batch)
+						{
+							if (mode == 1)
+								counter.incrementBy(delta);
+							else
+								for (int i = 0; i < Math.abs(delta); ++i)
+									if (delta > 0)
+										counter.increment();
+									else
+										counter.decrement();
+						}
+					}
+				}
+
+				long time = System.nanoTime() - start;
+
+				System.out.printf("%-14s %8.2f ms  %8d notifications  value %d%n",
+					new String[] { "increment()", "incrementBy()", "apply()" }[mode],
+					time / 1e6,
+					notifications.sum(),
+					counter.getValue());
+			}
+		}
+	}
+
+	/* Rates */
+
+	/**
+	 * Measures what tracking rates costs per change, and then changes a
+	 * counter at about 100,000 per second for three seconds while another
+	 * thread reads the rates.
+	 */
+	static private void rates() throws InterruptedException
+	{
+		System.out.println("Tracking rates");
+
+		com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+
+		for (int round = 0; round < 3; ++round)
+		{
+			for (boolean tracking : new boolean[] { false, true })
+			{
+				CounterExample.Counter counter = new CounterExample.Counter(-1000000000, 1000000000);
+
+				if (tracking)
+					counter.trackRates();
+
+				int changes = 50000000;
+				long allocated = threads.getCurrentThreadAllocatedBytes();
+				long start = System.nanoTime();
+
+				for (int i = 0; i < changes; ++i)
+					counter.increment();
+
+				long time = System.nanoTime() - start;
+				allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+
+				System.out.printf("%-12s %6.1f ns/change  %8.4f bytes/change%n",
+					tracking ? "tracking" : "not tracking",
+					(double) time / changes,
+					(double) allocated / changes);
+			}
+		}
+
+		final CounterExample.Counter counter = new CounterExample.Counter(-1000000000, 1000000000);
+		final CounterExample.RateWindow rates = counter.trackRates();
+		final AtomicBoolean running = new AtomicBoolean(true);
+
+		Thread reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (running.get())
+				{
+					try
+					{
+						Thread.sleep(500);
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+
+					System.out.printf("last 1 s %9.0f/s  10 s %9.0f/s  60 s %9.0f/s  peak %9.0f/s%n",
+						rates.getRate(1), rates.getRate(10), rates.getRate(60), rates.getPeakRate(60));
+				}
+			}
+		});
+
+		reader.start();
+
+		long start = System.nanoTime();
+
+		for (long tick = 1; tick <= 3000; ++tick)
+		{
+			for (int i = 0; i < 100; ++i)
+				counter.increment();
+
+			// 100 changes every millisecond
+			long wait = start + tick * 1000000L - System.nanoTime();
+
+			if (wait > 0)
+				Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+		}
+
+		running.set(false);
+		reader.join();
+	}
+
+	/* Registry */
+
+	/**
+	 * Registers 10,000 named counters, looks them up and changes them by
+	 * name from 1 up to 64 threads, compares a counter per thread with and
+	 * without padding, and takes snapshots while all that goes on.
+	 */
+	static private void registry() throws InterruptedException, IOException
+	{
+		System.out.println("Registry of 10000 counters, " + Runtime.getRuntime().availableProcessors() + " cores");
+
+		final CounterExample.CounterRegistry registry = new CounterExample.CounterRegistry();
+		final String[] names = new String[10000];
+
+		long start = System.nanoTime();
+
+		for (int i = 0; i < names.length; ++i)
+		{
+			names[i] = "tenant-" + i;
+			registry.register(names[i], 0, 1000);
+		}
+
+		System.out.printf("register   %8.1f ms%n", (System.nanoTime() - start) / 1e6);
+
+		for (int threads = 1; threads <= 64; threads *= 4)
+		{
+			double byName = runEach(threads, new ThreadOperation() {
+				@Override
+				public void apply(int thread, SplittableRandom random) {
+					CounterExample.Counter counter = registry.get(names[random.nextInt(names.length)]);
+
+					if (random.nextBoolean())
+						counter.increment();
+					else
+						counter.decrement();
+				}
+			});
+
+			System.out.printf("%3d threads  by name %7.1f M ops/s%n", threads, byName);
+		}
+
+		// A counter per thread, created one after the other like they would
+		// be in a registry.
+		for (int threads = 1; threads <= 64; threads *= 4)
+		{
+			final CounterExample.Counter[] plain = new CounterExample.Counter[threads];
+			final CounterExample.Counter[] padded = new CounterExample.Counter[threads];
+			CounterExample.CounterRegistry own = new CounterExample.CounterRegistry();
+
+			for (int i = 0; i < threads; ++i)
+			{
+				plain[i] = new CounterExample.Counter(-1000000000, 1000000000);
+				padded[i] = own.register("thread-" + i, -1000000000, 1000000000);
+			}
+
+			double plainRate = runEach(threads, new ThreadOperation() {
+				@Override
+				public void apply(int thread, SplittableRandom random) {
+					plain[thread].increment();
+				}
+			});
+
+			double paddedRate = runEach(threads, new ThreadOperation() {
+				@Override
+				public void apply(int thread, SplittableRandom random) {
+					padded[thread].increment();
+				}
+			});
+
+			System.out.printf("%3d threads  own counter  plain %7.1f M ops/s  padded %7.1f M ops/s%n",
+				threads, plainRate, paddedRate);
+		}
+
+		final AtomicBoolean running = new AtomicBoolean(true);
+		Thread writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				SplittableRandom random = new SplittableRandom(1);
+
+				while (running.get())
+					registry.get(names[random.nextInt(names.length)]).incrementBy(random.nextInt(-5, 6));
+			}
+		});
+
+		writer.start();
+
+		for (int round = 0; round < 5; ++round)
+		{
+			start = System.nanoTime();
+			CounterExample.CounterRegistry.Snapshot snapshot = registry.snapshot();
+			long time = System.nanoTime() - start;
+
+			boolean inBounds = snapshot.names.length == names.length;
+
+			for (int value : snapshot.values)
+				inBounds &= value >= 0 && value <= 1000;
+
+			StringWriter out = new StringWriter();
+			snapshot.write(out);
+
+			System.out.printf("snapshot   %8.2f ms  %d counters, %d bytes exported, %s%n",
+				time / 1e6, snapshot.names.length, out.getBuffer().length(),
+				inBounds ? "all in bounds" : "OUT OF BOUNDS");
+		}
+
+		running.set(false);
+		writer.join();
+	}
+
+	/**
+	 * Runs {@code operation} on {@code threads} threads for half a second,
+	 * without checking any bounds, and returns the number of million
+	 * operations per second.
+	 */
+	static private double runEach(int threads, final ThreadOperation operation) throws InterruptedException
+	{
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final LongAdder operations = new LongAdder();
+		Thread[] workers = new Thread[threads];
+
+		for (int i = 0; i < threads; ++i)
+		{
+			final int thread = i;
+
+			workers[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					SplittableRandom random = new SplittableRandom(thread);
+					long count = 0;
+
+					while (running.get())
+					{
+						for (int j = 0; j < 1024; ++j)
+							operation.apply(thread, random);
+
+						count += 1024;
+					}
+
+					operations.add(count);
+				}
+			});
+		}
+
+		long start = System.nanoTime();
+
+		for (Thread worker : workers)
+			worker.start();
+
+		Thread.sleep(500);
+		running.set(false);
+
+		for (Thread worker : workers)
+			worker.join();
+
+		return operations.sum() * 1e3 / (System.nanoTime() - start);
+	}
+
+	/* Shared between processes */
+
+	/**
+	 * Starts {@code processes} JVMs that all change the same SharedCounter
+	 * a million times, first with bounds they never reach and then with
+	 * bounds they hit all the time, and checks the result. This process
+	 * polls and makes changes of its own in the meantime, and checks that
+	 * its rates counted every change exactly once.
+	 */
+	static private void shared(int processes) throws IOException, InterruptedException
+	{
+		System.out.println("SharedCounter in " + processes + " processes");
+
+		for (int bound : new int[] { 1000000000, 10 })
+		{
+			File file = File.createTempFile("counter", ".counter");
+			file.deleteOnExit();
+
+			final CounterExample.SharedCounter counter = CounterExample.SharedCounter.open(file, -bound, bound);
+			Process[] workers = new Process[processes];
+
+			// Meanwhile this process polls, and changes the counter too, to
+			// check that every change is reported exactly once.
+			CounterExample.RateWindow rates = counter.trackRates();
+			int changesBefore = counter.getChanges();
+			counter.startPolling(1);
+
+			Thread local = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 100000; ++i)
+						if (i % 2 == 0)
+							counter.increment();
+						else
+							counter.decrement();
+				}
+			});
+
+			long start = System.nanoTime();
+			local.start();
+
+			for (int i = 0; i < processes; ++i)
+			{
+				workers[i] = new ProcessBuilder(
+					new File(System.getProperty("java.home"), "bin/java").getPath(),
+					"-cp", System.getProperty("java.class.path"),
+					"CounterBenchmark", "shared-worker", file.getPath(), Integer.toString(bound))
+					.inheritIO()
+					.start();
+			}
+
+			boolean inBounds = true;
+
+			for (Process worker : workers)
+				inBounds &= worker.waitFor() == 0;
+
+			local.join();
+
+			long time = System.nanoTime() - start;
+
+			counter.poll();
+
+			// Rates only count whole buckets of 100 ms.
+			Thread.sleep(200);
+
+			long changes = counter.getChanges() - changesBefore;
+			long reported = Math.round(rates.getRate(60) * 60);
+
+			System.out.printf("Counter(%d, %d)  %8.1f ms  value %d  %d of %d changes reported  %s%n",
+				-bound, bound, time / 1e6, counter.getValue(), reported, changes,
+				!inBounds ? "OUT OF BOUNDS"
+					: bound > 1000000 && counter.getValue() != processes * 1000000 ? "LOST CHANGES"
+					: reported != changes ? "REPORTED WRONG"
+					: "ok");
+
+			counter.close();
+		}
+	}
+
+	/**
+	 * One of the processes of shared(): increments the counter a million
+	 * times (or tries to), and exits with 1 if it ever saw it out of bounds.
+	 */
+	static private void sharedWorker(String file, int bound) throws IOException
+	{
+		CounterExample.SharedCounter counter = CounterExample.SharedCounter.open(new File(file), -bound, bound);
+		SplittableRandom random = new SplittableRandom();
+		boolean inBounds = true;
+		int changes = 1000000;
+
+		long start = System.nanoTime();
+
+		for (int i = 0; i < changes; ++i)
+		{
+			// With small bounds go both ways, or we would only hit max.
+			if (bound > changes || random.nextBoolean())
+				counter.increment();
+			else
+				counter.decrement();
+
+			int value = counter.getValue();
+			inBounds &= value >= -bound && value <= bound;
+		}
+
+		System.out.printf("  process: %5.1f ns/change%n", (System.nanoTime() - start) / (double) changes);
+
+		counter.close();
+		System.exit(inBounds ? 0 : 1);
+	}
+
+	/* Observers */
+
+	/**
+	 * Notifies 1 up to 10,000 observers that do next to nothing, through
+	 * java.util.Observable and through EventSource, and reports the time
+	 * and memory each notification takes.
+	 */
+	@SuppressWarnings("deprecation")
+	static private void observers()
+	{
+		System.out.println("Notifying observers");
+
+		com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+
+		final LongAdder updates = new LongAdder();
+
+		for (int count = 1; count <= 10000; count *= 10)
+		{
+			ObservableModel observable = new ObservableModel();
+			EventModel source = new EventModel();
+
+			for (int i = 0; i < count; ++i)
+			{
+				observable.addObserver(new java.util.Observer() {
+					@Override
+					public void update(java.util.Observable source, Object arg) {
+						updates.increment();
+					}
+				});
+
+				source.addObserver(new EventSource.Observer<EventModel, Integer>() {
+					@Override
+					public void update(EventModel source, Integer event) {
+						updates.increment();
+					}
+				});
+			}
+
+			int notifications = Math.max(100, 10000000 / count);
+			long[] times = new long[2];
+			long[] allocated = new long[2];
+
+			for (int round = 0; round < 3; ++round)
+			{
+				for (int mode = 0; mode < 2; ++mode)
+				{
+					allocated[mode] = threads.getCurrentThreadAllocatedBytes();
+					long start = System.nanoTime();
+
+					for (int i = 0; i < notifications; ++i)
+						if (mode == 0)
+							observable.change();
+						else
+							source.change();
+
+					times[mode] = System.nanoTime() - start;
+					allocated[mode] = threads.getCurrentThreadAllocatedBytes() - allocated[mode];
+				}
+			}
+
+			System.out.printf("%5d observers  Observable %10.1f ns %8.1f bytes  EventSource %10.1f ns %8.1f bytes  per notification%n",
+				count,
+				(double) times[0] / notifications, (double) allocated[0] / notifications,
+				(double) times[1] / notifications, (double) allocated[1] / notifications);
+		}
+	}
+
+	/* Asynchronous observers */
+
+	/**
+	 * Sends 2000 numbered events to an observer that takes a millisecond
+	 * for each, once directly and once through mailboxes that drop or
+	 * coalesce events when full, and checks the observer saw the events in
+	 * order.
+	 */
+	static private void async() throws InterruptedException
+	{
+		System.out.println("A slow observer");
+
+		final int events = 2000;
+
+		for (int mode = 0; mode < 3; ++mode)
+		{
+			EventSource<EventModel, Integer> source = new EventModel();
+			final int[] last = { -1 };
+			final boolean[] inOrder = { true };
+			final CountDownLatch done = new CountDownLatch(1);
+
+			EventSource.Observer<EventModel, Integer> observer = new EventSource.Observer<EventModel, Integer>() {
+				@Override
+				public void update(EventModel source, Integer event) {
+					LockSupport.parkNanos(1000000);
+
+					inOrder[0] &= event > last[0];
+					last[0] = event;
+
+					if (event == events - 1)
+						done.countDown();
+				}
+			};
+
+			if (mode == 0)
+				source.addObserver(observer);
+			else
+				source.addAsyncObserver(observer, 16,
+					mode == 1 ? EventSource.Overflow.DROP : EventSource.Overflow.COALESCE);
+
+			long start = System.nanoTime();
+
+			for (int i = 0; i < events; ++i)
+				source.notifyObservers(i);
+
+			long time = System.nanoTime() - start;
+
+			// Dropping may well drop the last one.
+			done.await(1, TimeUnit.SECONDS);
+
+			System.out.printf("%-10s %9.1f us/notification  %5d dropped  last seen %4d  %s%n",
+				new String[] { "direct", "drop", "coalesce" }[mode],
+				time / 1e3 / events,
+				source.getDroppedEvents(observer),
+				last[0],
+				inOrder[0] ? "in order" : "OUT OF ORDER");
+		}
+	}
+
+	/* Instrumented observers */
+
+	/**
+	 * Notifies 10 observers, one of which now and then takes 20 ms, first
+	 * plainly and then instrumented, to see what measuring costs, and prints
+	 * the stats, which should show the slow one as slow.
+	 */
+	static private void instrumented()
+	{
+		System.out.println("Instrumented notifications");
+
+		com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+
+		final LongAdder updates = new LongAdder();
+		EventModel source = new EventModel();
+
+		for (int i = 0; i < 9; ++i)
+			source.addObserver(new EventSource.Observer<EventModel, Integer>() {
+				@Override
+				public void update(EventModel source, Integer event) {
+					updates.increment();
+				}
+			});
+
+		EventSource.Observer<EventModel, Integer> slow = new EventSource.Observer<EventModel, Integer>() {
+			@Override
+			public void update(EventModel source, Integer event) {
+				if (event % 50 == 0)
+					LockSupport.parkNanos(20000000);
+			}
+		};
+
+		source.addObserver(slow);
+
+		final int notifications = 1000000;
+
+		for (int mode = 0; mode < 2; ++mode)
+		{
+			if (mode == 1)
+				source.instrument();
+
+			long time = 0;
+			long allocated = 0;
+
+			for (int round = 0; round < 3; ++round)
+			{
+				allocated = threads.getCurrentThreadAllocatedBytes();
+				long start = System.nanoTime();
+
+				// Odd events, so the slow observer stays fast for now.
+				for (int i = 0; i < notifications; ++i)
+					source.notifyObservers(2 * i + 1);
+
+				time = System.nanoTime() - start;
+				allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+			}
+
+			System.out.printf("%-12s %8.1f ns %6.2f bytes per notification%n",
+				mode == 0 ? "plain" : "instrumented",
+				(double) time / notifications, (double) allocated / notifications);
+		}
+
+		for (int i = 0; i < 500; ++i)
+			source.notifyObservers(i);
+
+		System.out.println();
+		source.getStats().print(System.out);
+		System.out.println("slow observer flagged: " + source.getStats().isSlow(slow));
+	}
+
+	/* Weak observers */
+
+	/**
+	 * Makes whatever observes the counter in one CounterWindow, lets go of
+	 * it again, and returns what holds all of it together. Without a display
+	 * there can be no window, so then only the toolbar and the display in it
+	 * are made.
+	 */
+	static private java.awt.Container openAndClose(CounterExample.Counter counter)
+	{
+		if (!java.awt.GraphicsEnvironment.isHeadless())
+		{
+			CounterExample.CounterWindow window = new CounterExample.CounterWindow(counter);
+			window.dispose();
+			return window;
+		}
+
+		javax.swing.JToolBar toolBar = new javax.swing.JToolBar();
+		toolBar.add(new CounterExample.IncrementAction("Increment", counter));
+		toolBar.add(new CounterExample.DecrementAction("Decrement", counter));
+		toolBar.add(new CounterExample.CounterDisplay(counter));
+		return toolBar;
+	}
+
+	/**
+	 * Opens and closes 10000 CounterWindows on one counter, in rounds, and
+	 * checks that every closed one is collected and the counter is left with
+	 * only the observer that is still open.
+	 *
+	 * The heap still creeps up a few dozen bytes per window: the Metal look
+	 * and feel keeps a (weak) reference to every JToolBar ever made, and does
+	 * not clean those up until the toolbar is given another look.
+	 */
+	static private void soak() throws InterruptedException, InvocationTargetException
+	{
+		System.out.println("Opening and closing windows"
+			+ (java.awt.GraphicsEnvironment.isHeadless() ? " (headless, so only their contents)" : ""));
+
+		final java.lang.management.MemoryMXBean memory = java.lang.management.ManagementFactory.getMemoryMXBean();
+		final CounterExample.Counter counter = new CounterExample.Counter(-5, 5);
+		final ArrayList<java.lang.ref.WeakReference<java.awt.Container>> closed =
+			new ArrayList<java.lang.ref.WeakReference<java.awt.Container>>();
+
+		// The one that stays open.
+		CounterExample.CounterDisplay display = new CounterExample.CounterDisplay(counter);
+
+		int rounds = 10;
+		int reachable = 0;
+		long first = 0;
+
+		for (int round = 0; round <= rounds; ++round)
+		{
+			SwingUtilities.invokeAndWait(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 1000; ++i)
+					{
+						closed.add(new java.lang.ref.WeakReference<java.awt.Container>(openAndClose(counter)));
+
+						if (i % 10 == 0)
+							counter.increment();
+					}
+				}
+			});
+
+			for (int i = 0; i < 50 && counter.countObservers() > 1; ++i)
+			{
+				System.gc();
+				Thread.sleep(10);
+			}
+
+			System.gc();
+
+			for (java.lang.ref.WeakReference<java.awt.Container> window : closed)
+				if (window.get() != null)
+					reachable++;
+
+			closed.clear();
+
+			long used = memory.getHeapMemoryUsage().getUsed();
+
+			// The first round warms up Swing and the JIT.
+			if (round == 1)
+				first = used;
+
+			System.out.printf("%6d windows  %5d observers  %8d KB heap%n",
+				(round + 1) * 1000, counter.countObservers(), used / 1024);
+
+			if (round == rounds)
+				System.out.printf("%s, %d closed windows still reachable, heap %+d KB since round 1%n",
+					counter.countObservers() == 1 ? "Only the open display is left" : "OBSERVERS LEAKED",
+					reachable, (used - first) / 1024);
+		}
+
+		// Keep the open one open until the end.
+		display.setVisible(true);
+	}
+
+	static public void main(String[] args) throws InterruptedException, InvocationTargetException, IOException
+	{
+		String name = args.length > 0 ? args[0] : "contention";
+
+		if (name.equals("contention"))
+			contention();
+		else if (name.equals("burst"))
+			burst();
+		else if (name.equals("batch"))
+			batch();
+		else if (name.equals("rates"))
+			rates();
+		else if (name.equals("registry"))
+			registry();
+		else if (name.equals("observers"))
+			observers();
+		else if (name.equals("async"))
+			async();
+		else if (name.equals("instrumented"))
+			instrumented();
+		else if (name.equals("soak"))
+			soak();
+		else if (name.equals("shared"))
+			shared(args.length > 1 ? Integer.parseInt(args[1]) : 4);
+		else if (name.equals("shared-worker"))
+			sharedWorker(args[1], Integer.parseInt(args[2]));
+		else
+			System.err.println("Unknown benchmark: " + name);
+	}
+}
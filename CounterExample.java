@@ -1,6 +1,23 @@
 import java.awt.*;
 import java.awt.event.*;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.function.Function;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 import javax.swing.*;
 
 class CounterExample
@@ -9,45 +26,217 @@ class CounterExample
 	 * This is a limited counter, able to count from {@code min} to {@code max}.
 	 * You can also query its state, whether it is able to continue incrementing
 	 * or decrementing using {@link #canIncrement()} and {@link #canDecrement()}.
+	 *
+	 * The counter is safe to use from many threads at once. Checking the
+	 * bound and changing the value happen in one compare-and-set, so the
+	 * value never leaves [min, max], and neither changing it nor notifying
+	 * the observers takes a lock. To change it by more than one at a time, use
+	 * {@link #incrementBy(int)}, {@link #decrementBy(int)} or
+	 * {@link #apply(int[])}.
+	 *
+	 * Call {@link #trackRates()} to also keep track of how fast it changes.
+	 *
+	 * Observers are notified right away, on the thread that changed the
+	 * counter. Observers that are part of the user interface are better
+	 * added with addEdtObserver() or addWeakEdtObserver(): they are then
+	 * notified on the event dispatch thread, at most once a frame.
 	 */
-	class Counter extends Observable
+	static class Counter extends EventSource<Counter, Counter.Change>
 	{
-		private int min;
-		private int max;
-		private int value;
+		/**
+		 * What changed, in a notification of a Counter.
+		 */
+		enum Change
+		{
+			VALUE
+		}
+
+		private final int min;
+		private final int max;
+		private final AtomicInteger value;
+
+		// Only there if somebody wants to know, see trackRates().
+		private volatile RateWindow rates;
 
 		public Counter(int min, int max)
+		{
+			this(min, max, new AtomicInteger(0));
+		}
+
+		/**
+		 * A counter that keeps its value in {@code value}, e.g. a padded one
+		 * from a CounterRegistry, or nowhere at all if a subclass overrides
+		 * load() and compareAndSet().
+		 */
+		Counter(int min, int max, AtomicInteger value)
 		{
 			this.min = min;
 			this.max = max;
-			this.value = 0;
+			this.value = value;
+		}
+
+		/**
+		 * Starts keeping track of how fast the counter changes, and returns
+		 * the RateWindow that does. Calling it again returns the same one.
+		 */
+		public synchronized RateWindow trackRates()
+		{
+			if (rates == null)
+				rates = new RateWindow();
+
+			return rates;
+		}
+
+		/**
+		 * The RateWindow of this counter, or null if trackRates() was never
+		 * called.
+		 */
+		public RateWindow getRates()
+		{
+			return rates;
 		}
 
 		public void increment()
 		{
-			if (canIncrement())
+			changed(add(1));
+		}
+
+		public void decrement()
+		{
+			changed(add(-1));
+		}
+
+		/**
+		 * Increments the counter by {@code n} in one go, but never past max.
+		 * Returns how much it was actually incremented by. Observers are
+		 * notified once, if at all.
+		 */
+		public int incrementBy(int n)
+		{
+			long applied = add(n);
+			changed(applied);
+			return saturate(applied);
+		}
+
+		/**
+		 * Decrements the counter by {@code n} in one go, but never past min.
+		 * Returns how much it was actually decremented by.
+		 */
+		public int decrementBy(int n)
+		{
+			long applied = add(-(long) n);
+			changed(applied);
+			return saturate(-applied);
+		}
+
+		/**
+		 * Adds all {@code deltas} in order, as if they were that many calls
+		 * to incrementBy(), so each one stops at min or max. They are applied
+		 * all at once though: nobody sees the values in between, and
+		 * observers are notified once. Returns the total change, or
+		 * Integer.MIN_VALUE or MAX_VALUE if it does not fit in an int.
+		 */
+		public int apply(int[] deltas)
+		{
+			while (true)
 			{
-				value++;
-				setChanged();
-			}
+				int current = load();
+				int next = current;
+
+				for (int delta : deltas)
+					next = clamp((long) next + delta);
 
-			notifyObservers();
+				if (compareAndSet(current, next))
+				{
+					long applied = (long) next - current;
+					changed(applied);
+					return saturate(applied);
+				}
+			}
 		}
 
-		public void decrement()
+		/**
+		 * Adds {@code delta} to the value, stopping at min or max, and
+		 * returns how much was really added. Between min and max there is
+		 * room for up to 2^32 - 1, so that is a long.
+		 */
+		private long add(long delta)
 		{
-			if (canDecrement())
+			while (true)
 			{
-				value--;
-				setChanged();
+				int current = load();
+				int next = clamp(current + delta);
+
+				if (next == current || compareAndSet(current, next))
+					return (long) next - current;
 			}
+		}
+
+		private int clamp(long value)
+		{
+			return (int) Math.max(min, Math.min(max, value));
+		}
 
-			notifyObservers();
+		private static int saturate(long value)
+		{
+			return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+		}
+
+		/**
+		 * Reads the value. This and compareAndSet() are the only places the
+		 * value is used, so a subclass can keep it somewhere else, see
+		 * SharedCounter.
+		 */
+		int load()
+		{
+			return value.get();
+		}
+
+		boolean compareAndSet(int expected, int next)
+		{
+			return value.compareAndSet(expected, next);
+		}
+
+		/**
+		 * Called after every change of the value by {@code amount}. If it did
+		 * not change, there is nothing to tell, so we don't.
+		 */
+		void changed(long amount)
+		{
+			if (amount == 0)
+				return;
+
+			report(saturate(Math.abs(amount)));
+		}
+
+		/**
+		 * Records a change of {@code size} (at least 1) in the rates, and
+		 * tells the observers about it.
+		 */
+		void report(int size)
+		{
+			RateWindow rates = this.rates;
+
+			if (rates != null)
+				rates.record(size);
+
+			if (countObservers() > 0)
+				notifyObservers(Change.VALUE);
 		}
 
 		public int getValue()
 		{
-			return value;
+			return load();
+		}
+
+		public int getMin()
+		{
+			return min;
+		}
+
+		public int getMax()
+		{
+			return max;
 		}
 
 		public String getValueAsString()
@@ -57,22 +246,500 @@ class CounterExample
 
 		public boolean canIncrement()
 		{
-			return value < max;
+			return getValue() < max;
 		}
 
 		public boolean canDecrement()
 		{
-			return value > min;
+			return getValue() > min;
+		}
+	}
+
+	/**
+	 * A Counter shared by every process on this machine that opens the same
+	 * file. The value lives in the file, which is mapped into memory, and is
+	 * changed with compare-and-set straight on the mapped memory, so all
+	 * processes see each other's changes and none of them can push it past
+	 * min or max. The file looks like this:
+	 *
+	 *   0   MAGIC
+	 *   4   VERSION
+	 *   8   min
+	 *   12  max
+	 *   16  changes << 32 | value, as one long
+	 *
+	 * all little-endian. The number of changes is counted along with the
+	 * value, so a process can tell the value changed even if it changed back.
+	 *
+	 * Changes made in this process notify observers as usual. Changes made in
+	 * other processes can not wake us up, so to hear about those, call poll()
+	 * or let startPolling() do that.
+	 *
+	 * Whoever notifies first claims all changes up to then, by moving the
+	 * state we have seen forward with compare-and-set. That way each change,
+	 * ours or theirs, is reported exactly once, even when the poller looks
+	 * right between our compare-and-set on the file and our notification.
+	 * The rates of a shared counter therefore count changes, not how much
+	 * the value moved.
+	 */
+	static class SharedCounter extends Counter implements Closeable
+	{
+		// "CNTR" in ASCII
+		static private final int MAGIC = 0x434E5452;
+
+		static private final int VERSION = 1;
+
+		static private final int SIZE = 24;
+
+		static private final int STATE = 16;
+
+		static private final VarHandle LONGS =
+			MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+		private final FileChannel channel;
+
+		private final MappedByteBuffer buffer;
+
+		// The last state reported to the observers. It only moves forward.
+		private final AtomicLong seen;
+
+		private Thread poller;
+
+		private SharedCounter(int min, int max, FileChannel channel, MappedByteBuffer buffer)
+		{
+			super(min, max, null);
+
+			this.channel = channel;
+			this.buffer = buffer;
+			this.seen = new AtomicLong(state());
+		}
+
+		/**
+		 * Opens the counter in {@code file}, or creates it with bounds
+		 * {@code min} and {@code max} if the file does not exist or is empty.
+		 * An existing counter has to have the same bounds.
+		 */
+		static public SharedCounter open(File file, int min, int max) throws IOException
+		{
+			FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+			try
+			{
+				// Lock while looking at the header, in case another process
+				// is creating the same counter right now.
+				FileLock lock = channel.lock();
+
+				try
+				{
+					MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SIZE);
+					buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+					if (buffer.getInt(0) == 0)
+					{
+						buffer.putInt(8, min);
+						buffer.putInt(12, max);
+						buffer.putLong(STATE, Math.max(min, Math.min(max, 0)) & 0xFFFFFFFFL);
+						buffer.putInt(4, VERSION);
+						buffer.putInt(0, MAGIC);
+						buffer.force();
+					}
+					else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+						throw new IOException("Not a counter: " + file);
+					else if (buffer.getInt(8) != min || buffer.getInt(12) != max)
+						throw new IOException(file + " counts from " + buffer.getInt(8)
+							+ " to " + buffer.getInt(12) + ", not from " + min + " to " + max);
+
+					return new SharedCounter(min, max, channel, buffer);
+				}
+				finally
+				{
+					lock.release();
+				}
+			}
+			catch (IOException e)
+			{
+				channel.close();
+				throw e;
+			}
+		}
+
+		private long state()
+		{
+			return (long) LONGS.getVolatile(buffer, STATE);
+		}
+
+		@Override
+		int load()
+		{
+			return (int) state();
+		}
+
+		@Override
+		boolean compareAndSet(int expected, int next)
+		{
+			long state = state();
+
+			if ((int) state != expected)
+				return false;
+
+			long changed = ((state >>> 32) + 1) << 32 | (next & 0xFFFFFFFFL);
+
+			return LONGS.compareAndSet(buffer, STATE, state, changed);
+		}
+
+		/**
+		 * Called after a change made in this process. The poller may already
+		 * have reported it, and there may be changes of others before it
+		 * that nobody reported yet, so this reports whatever is left.
+		 */
+		@Override
+		void changed(long amount)
+		{
+			claim();
+		}
+
+		/**
+		 * The number of changes made to the counter so far, by any process.
+		 * It wraps around after 2^32 changes.
+		 */
+		int getChanges()
+		{
+			return (int) (state() >>> 32);
+		}
+
+		/**
+		 * Notifies the observers if the counter changed (in another process)
+		 * since we last looked, and returns whether it did.
+		 */
+		public boolean poll()
+		{
+			return claim();
+		}
+
+		/**
+		 * Reports the changes nobody has reported yet, if there are any.
+		 */
+		private boolean claim()
+		{
+			while (true)
+			{
+				long last = seen.get();
+				long state = state();
+
+				// The number of changes lives in the top 32 bits, and may
+				// wrap around.
+				int changes = (int) (state >>> 32) - (int) (last >>> 32);
+
+				if (changes <= 0)
+					return false;
+
+				if (seen.compareAndSet(last, state))
+				{
+					report(changes);
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * Calls poll() every {@code millis} milliseconds on a thread of its
+		 * own, until close().
+		 */
+		public synchronized void startPolling(final long millis)
+		{
+			if (poller != null)
+				return;
+
+			poller = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					while (!Thread.currentThread().isInterrupted())
+					{
+						poll();
+						LockSupport.parkNanos(millis * 1000000L);
+					}
+				}
+			}, "SharedCounter poller");
+
+			poller.setDaemon(true);
+			poller.start();
+		}
+
+		@Override
+		public synchronized void close() throws IOException
+		{
+			if (poller != null)
+			{
+				poller.interrupt();
+				poller = null;
+			}
+
+			channel.close();
+		}
+	}
+
+	/**
+	 * A lot of named counters, e.g. one quota per user. The names are kept in
+	 * a ConcurrentHashMap, so looking up a counter takes no lock at all, and
+	 * threads registering different names hardly ever wait for each other.
+	 * Once you have a Counter, changing it does not touch the registry at all.
+	 *
+	 * The values of the counters are padded to a cache line each. Otherwise
+	 * counters created one after the other end up next to each other in
+	 * memory, and threads changing different counters on different cores
+	 * keep taking that cache line away from each other.
+	 */
+	static class CounterRegistry
+	{
+		/**
+		 * An AtomicInteger followed by enough padding to fill up the rest of
+		 * its cache line. The padding of the cell before it keeps the front
+		 * clear.
+		 */
+		@SuppressWarnings("unused")
+		static private class PaddedCell extends AtomicInteger
+		{
+			private long p1, p2, p3, p4, p5, p6, p7;
+		}
+
+		/**
+		 * All counters at one moment, sorted by name. Each value is one the
+		 * counter really had while the snapshot was taken, but the values are
+		 * not all from the same instant: taking the snapshot does not stop
+		 * anybody from changing the counters.
+		 */
+		static public class Snapshot
+		{
+			public final String[] names;
+
+			public final int[] values;
+
+			private Snapshot(String[] names, int[] values)
+			{
+				this.names = names;
+				this.values = values;
+			}
+
+			/**
+			 * Writes one "name value" line per counter to {@code out}.
+			 */
+			public void write(Writer out) throws IOException
+			{
+				for (int i = 0; i < names.length; ++i)
+					out.write(names[i] + " " + values[i] + "\n");
+
+				out.flush();
+			}
+		}
+
+		private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+
+		/**
+		 * Returns the counter named {@code name}, creating it with bounds
+		 * {@code min} and {@code max} if there is none yet. (If there is, its
+		 * own bounds stay as they are.)
+		 */
+		public Counter register(String name, final int min, final int max)
+		{
+			Counter counter = counters.get(name);
+
+			if (counter != null)
+				return counter;
+
+			return counters.computeIfAbsent(name, new Function<String, Counter>() {
+				@Override
+				public Counter apply(String name) {
+					return new Counter(min, max, new PaddedCell());
+				}
+			});
+		}
+
+		/**
+		 * Returns the counter named {@code name}, or null if there is none.
+		 */
+		public Counter get(String name)
+		{
+			return counters.get(name);
+		}
+
+		public Counter remove(String name)
+		{
+			return counters.remove(name);
+		}
+
+		public int size()
+		{
+			return counters.size();
+		}
+
+		/**
+		 * Takes a snapshot of all counters. Nothing is locked: the entries
+		 * are copied first and the values read after that, so neither
+		 * lookups nor changes have to wait for the snapshot. A counter
+		 * registered or removed while it is being taken may or may not be in
+		 * it.
+		 */
+		public Snapshot snapshot()
+		{
+			ArrayList<Map.Entry<String, Counter>> entries = new ArrayList<Map.Entry<String, Counter>>();
+
+			for (Map.Entry<String, Counter> entry : counters.entrySet())
+				entries.add(new AbstractMap.SimpleImmutableEntry<String, Counter>(entry));
+
+			Collections.sort(entries, new Comparator<Map.Entry<String, Counter>>() {
+				@Override
+				public int compare(Map.Entry<String, Counter> a, Map.Entry<String, Counter> b) {
+					return a.getKey().compareTo(b.getKey());
+				}
+			});
+
+			String[] names = new String[entries.size()];
+			int[] values = new int[entries.size()];
+
+			for (int i = 0; i < names.length; ++i)
+			{
+				names[i] = entries.get(i).getKey();
+				values[i] = entries.get(i).getValue().getValue();
+			}
+
+			return new Snapshot(names, values);
+		}
+	}
+
+	/**
+	 * Keeps track of how fast something changes, over the last minute. Time
+	 * is cut into buckets of 100 ms, kept in a ring of one minute's worth,
+	 * and record() adds to the bucket of now. A bucket holds its own period
+	 * number next to its count in one long, so a bucket from a minute ago is
+	 * recognised and started over without any locking.
+	 *
+	 * Recording does not allocate and is safe from any number of threads,
+	 * and the rates can be read from yet another thread at the same time.
+	 * Rates only include whole buckets, so they lag up to 100 ms behind.
+	 */
+	static class RateWindow
+	{
+		static final long BUCKET_NANOS = 100000000L;
+
+		static final int BUCKETS_PER_SECOND = (int) (1000000000L / BUCKET_NANOS);
+
+		static final int SECONDS = 60;
+
+		// One extra for the bucket that is being filled right now.
+		static private final int SIZE = SECONDS * BUCKETS_PER_SECOND + 1;
+
+		// period << 32 | count
+		private final AtomicLongArray buckets = new AtomicLongArray(SIZE);
+
+		private final long start = System.nanoTime();
+
+		private long period()
+		{
+			// Periods start at 1, so an empty bucket never matches one.
+			return (System.nanoTime() - start) / BUCKET_NANOS + 1;
+		}
+
+		/**
+		 * Records {@code count} changes, now.
+		 */
+		public void record(int count)
+		{
+			long period = period();
+			int slot = (int) (period % SIZE);
+
+			while (true)
+			{
+				long bucket = buckets.get(slot);
+
+				// The count stops at 2^32 - 1 rather than carry into the
+				// period.
+				long next = (bucket >>> 32) == period
+					? period << 32 | Math.min(0xFFFFFFFFL, (bucket & 0xFFFFFFFFL) + count)
+					: period << 32 | count;
+
+				if (buckets.compareAndSet(slot, bucket, next))
+					return;
+			}
+		}
+
+		/**
+		 * The number of changes in the {@code buckets} whole buckets before
+		 * {@code period}, ignoring any that are older than that.
+		 */
+		private long sum(long period, int buckets)
+		{
+			long sum = 0;
+
+			for (long p = period - buckets; p < period; ++p)
+			{
+				if (p < 1)
+					continue;
+
+				long bucket = this.buckets.get((int) (p % SIZE));
+
+				if ((bucket >>> 32) == p)
+					sum += bucket & 0xFFFFFFFFL;
+			}
+
+			return sum;
+		}
+
+		/**
+		 * Changes per second over the last {@code seconds} (at most 60)
+		 * seconds.
+		 */
+		public double getRate(int seconds)
+		{
+			seconds = Math.min(seconds, SECONDS);
+			return (double) sum(period(), seconds * BUCKETS_PER_SECOND) / seconds;
+		}
+
+		/**
+		 * The highest rate, in changes per second, over any one second in the
+		 * last {@code seconds} (at most 60) seconds.
+		 */
+		public double getPeakRate(int seconds)
+		{
+			seconds = Math.min(seconds, SECONDS);
+
+			long period = period();
+			long peak = 0;
+
+			// Slide a window of one second back over the buckets.
+			long sum = sum(period, BUCKETS_PER_SECOND);
+
+			for (long end = period; end > period - (seconds - 1) * BUCKETS_PER_SECOND; --end)
+			{
+				peak = Math.max(peak, sum);
+				sum += sum(end - BUCKETS_PER_SECOND, 1) - sum(end, 1);
+			}
+
+			return Math.max(peak, sum);
 		}
 	}
 
 	/* Actions (Controller-ish code) */
 
+	/**
+	 * How often, per second, the views of a counter hear about its changes.
+	 */
+	static final int FRAME_RATE = 60;
+
 	/**
 	 * The actions subscribe themselves to the notifications of the counter.
 	 * They can use these to update their state when the counter changes.
+	 *
+	 * They subscribe weakly: the counter may well outlive the window the
+	 * actions are in, and should not keep the actions (and through their
+	 * buttons, the whole window) alive. The buttons keep the actions alive
+	 * for as long as the window is there.
+	 *
+	 * They are notified on the EDT, at most once a frame, so a counter that
+	 * changes a lot from another thread does not flood the EDT. Other
+	 * observers of the same counter still hear about every change.
 	 */
-	abstract class AbstractCounterAction extends AbstractAction implements Observer
+	static abstract class AbstractCounterAction extends AbstractAction implements EventSource.Observer<Counter, Counter.Change>
 	{
 		protected Counter counter;
 
@@ -85,12 +752,13 @@ class CounterExample
 			this.counter = counter;
 
 			// Listen for update notifications which we can
-			// use to update our is-enabled state.
-			counter.addObserver(this);
+			// use to update our is-enabled state. Once a frame is
+			// plenty for that.
+			counter.addWeakEdtObserver(this, FRAME_RATE);
 		}
 	}
 
-	class IncrementAction extends AbstractCounterAction
+	static class IncrementAction extends AbstractCounterAction
 	{
 		public IncrementAction(String label, Counter counter)
 		{
@@ -104,13 +772,13 @@ class CounterExample
 		}
 
 		@Override
-		public void update(Observable source, Object arg)
+		public void update(Counter source, Counter.Change change)
 		{
 			setEnabled(counter.canIncrement());
 		}
 	}
 
-	class DecrementAction extends AbstractCounterAction
+	static class DecrementAction extends AbstractCounterAction
 	{
 		public DecrementAction(String label, Counter counter)
 		{
@@ -124,13 +792,13 @@ class CounterExample
 		}
 
 		@Override
-		public void update(Observable source, Object arg)
+		public void update(Counter source, Counter.Change change)
 		{
 			setEnabled(counter.canDecrement());
 		}
 	}
 
-	class CounterDisplay extends JLabel implements Observer
+	static class CounterDisplay extends JLabel implements EventSource.Observer<Counter, Counter.Change>
 	{
 		// Just to display the two different methods you can use
 		// to update your view based on your model changes, this
@@ -142,34 +810,49 @@ class CounterExample
 		public CounterDisplay(Counter counter)
 		{
 			setHorizontalAlignment(CENTER);
-			counter.addObserver(this);
+
+			// Weakly and once a frame, like the actions, so a closed
+			// window does not stay around for as long as the counter
+			// does.
+			counter.addWeakEdtObserver(this, FRAME_RATE);
 
 			// Also set the initial state of this display.
 			setText(counter.getValueAsString());
 		}
 
+		/**
+		 * A display for the counter named {@code name} in {@code registry},
+		 * which has to exist.
+		 */
+		public CounterDisplay(CounterRegistry registry, String name)
+		{
+			this(registry.get(name));
+		}
+
 		@Override
-		public void update(Observable source, Object arg)
+		public void update(Counter counter, Counter.Change change)
 		{
-			// I know the source of the update-call is a Counter instance
-			// since I subscribed myself to the counter passed to the
-			// constructor.
-			Counter counter = (Counter) source;
+			// The source of the update-call is the Counter I subscribed
+			// myself to in the constructor, and EventSource passes it as
+			// a Counter, so there is no need to cast.
 			setText(counter.getValueAsString());
 		}
 	}
 
-	class CounterWindow extends JFrame
+	static class CounterWindow extends JFrame
 	{
 		public CounterWindow()
+		{
+			// Here I have my model: a counter.
+			this(new Counter(-5, 5));
+		}
+
+		public CounterWindow(Counter counter)
 		{
 			setTitle("Counter");
 			setSize(200, 200);
 			setLayout(new BorderLayout());
 
-			// Here I have my model: a counter
-			Counter counter = new Counter(-5, 5);
-
 			// Here I use a toolbar because toolbar actions listen to
 			// the setEnabled-change of AbstractAction. Now, when the
 			// model updates, the actions will change the enabled/disabled
@@ -200,13 +883,36 @@ class CounterExample
 	 */
 	public CounterExample()
 	{
-		CounterWindow win = new CounterWindow();
+		this(null);
+	}
+
+	/**
+	 * Shows a window for {@code counter}, or for a new counter if it is
+	 * null.
+	 */
+	public CounterExample(Counter counter)
+	{
+		CounterWindow win = counter != null ? new CounterWindow(counter) : new CounterWindow();
 		win.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		win.setVisible(true);
 	}
 
-	static public void main(String[] args)
+	static public void main(String[] args) throws IOException
 	{
-		new CounterExample();
+		// Pass a file, e.g. quota.counter, to share the counter with every
+		// other CounterExample that opens the same file.
+		Counter counter = args.length == 1 ? SharedCounter.open(new File(args[0]), -5, 5) : new Counter(-5, 5);
+
+		if (counter instanceof SharedCounter)
+			((SharedCounter) counter).startPolling(16);
+
+		// Run with -DeventStats=10 to see how long the observers take, every
+		// 10 seconds.
+		Integer seconds = Integer.getInteger("eventStats");
+
+		if (seconds != null)
+			counter.instrument().startDump(System.out, seconds * 1000L);
+
+		new CounterExample(counter);
 	}
 }
\ No newline at end of file
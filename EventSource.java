@@ -0,0 +1,870 @@
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.PrintStream;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Used instead of java.util.Observable by the models of these examples. It
+ * works the same way, with addObserver() and notifyObservers(), but:
+ *
+ * - observers get the source as what it really is, so no more casting
+ *   {@code (Counter) source}, and an event of a type of your own choosing
+ *   instead of an {@code Object arg};
+ * - there is no setChanged(): if you don't want to notify, don't call
+ *   notifyObservers();
+ * - observers are kept in an array that is replaced as a whole whenever an
+ *   observer is added or removed (copy-on-write), so notifying takes no lock
+ *   and does not copy or allocate anything. Observable does both, every
+ *   time. Adding and removing is lock-free too, but costs a copy of the
+ *   array, which is fine since that happens a lot less often.
+ *
+ * Observers are notified in the order they were added. An observer that is
+ * added or removed while a notification is going on, does or does not get
+ * that notification, but nothing in between.
+ *
+ * Observers are notified on the thread that calls notifyObservers(), so a
+ * slow one holds up whoever changed the model. An observer added with
+ * addAsyncObserver() gets a mailbox instead: notifying only puts the event
+ * in there, and the events are handed to the observer one by one, in order,
+ * on another thread. Whether an observer is notified right away or through
+ * a mailbox can be changed at any time by adding it again the other way.
+ * (Events still in the old mailbox are delivered, but not necessarily before
+ * the first ones that come the new way.)
+ *
+ * An observer that is part of the user interface can be added with
+ * addEdtObserver() instead. It is then notified on the event dispatch
+ * thread, at most so many times per second, and only of the latest event:
+ * whatever happens in between rides along with the next notification. So a
+ * burst of events from another thread does not flood the EDT, and the other
+ * observers of the same source still hear about every event, right away.
+ *
+ * An observer added with addWeakObserver() is only referred to weakly, so
+ * the source does not keep it alive: once nothing else refers to it, it is
+ * collected and quietly disappears from the observers. That makes it the way
+ * to observe a long-lived model from something short-lived, like a window,
+ * without having to remember to delete the observer again. (And it is also
+ * why you cannot add an anonymous class weakly and forget about it: it would
+ * be gone after the next garbage collection.) Collected observers are
+ * removed all at once, the next time the source notifies or counts its
+ * observers after the garbage collector let it know.
+ *
+ * To find out which observer makes things slow, call instrument(). From then
+ * on every notification and every call to an observer is timed.
+ *
+ * A subclass passes itself as {@code S}, e.g.
+ * {@code class Counter extends EventSource<Counter, Counter.Change>}.
+ */
+class EventSource<S, E>
+{
+	/**
+	 * Receives the events of an EventSource.
+	 */
+	interface Observer<S, E>
+	{
+		void update(S source, E event);
+	}
+
+	/**
+	 * What a mailbox does with a new event when it is full.
+	 */
+	enum Overflow
+	{
+		/** Throw the new event away. */
+		DROP,
+
+		/**
+		 * Replace the last event in the mailbox with the new one, so the
+		 * observer always gets the latest event eventually.
+		 */
+		COALESCE
+	}
+
+	/**
+	 * Runs the mailboxes of observers that did not ask for anything else.
+	 * (From Java 21, Executors.newVirtualThreadPerTaskExecutor() is a good
+	 * choice to pass to addAsyncObserver instead.)
+	 */
+	static private final ExecutorService MAILBOXES = Executors.newCachedThreadPool(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "EventSource mailbox");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/**
+	 * Stands in for an observer in the array of observers, and keeps its
+	 * events until the executor gets round to them. At most one thread
+	 * empties a mailbox at a time, which keeps the events in order.
+	 */
+	static private class Mailbox<S, E> implements Observer<S, E>, Runnable
+	{
+		final Observer<? super S, ? super E> observer;
+
+		private final Overflow overflow;
+
+		private final Executor executor;
+
+		private final Object[] events;
+
+		private int head;
+
+		private int size;
+
+		// Whether the executor has (or will) run this mailbox.
+		private boolean scheduled;
+
+		private S source;
+
+		private final AtomicLong dropped = new AtomicLong();
+
+		Mailbox(Observer<? super S, ? super E> observer, int capacity, Overflow overflow, Executor executor)
+		{
+			this.observer = observer;
+			this.overflow = overflow;
+			this.executor = executor;
+			this.events = new Object[capacity];
+		}
+
+		@Override
+		public void update(S source, E event)
+		{
+			boolean schedule;
+
+			synchronized (this)
+			{
+				this.source = source;
+
+				if (size < events.length)
+					events[(head + size++) % events.length] = event;
+				else
+				{
+					if (overflow == Overflow.COALESCE)
+						events[(head + size - 1) % events.length] = event;
+
+					dropped.incrementAndGet();
+				}
+
+				schedule = !scheduled;
+				scheduled = true;
+			}
+
+			if (schedule)
+				executor.execute(this);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void run()
+		{
+			while (true)
+			{
+				S source;
+				E event;
+
+				synchronized (this)
+				{
+					if (size == 0)
+					{
+						scheduled = false;
+						return;
+					}
+
+					source = this.source;
+					event = (E) events[head];
+					events[head] = null;
+					head = (head + 1) % events.length;
+					size--;
+				}
+
+				observer.update(source, event);
+			}
+		}
+	}
+
+	/**
+	 * Stands in for an observer that was added with addEdtObserver(). It
+	 * keeps the latest event and has the EDT pass it on, unless the last
+	 * one was less than a frame ago: then it waits for the rest of that
+	 * frame first. {@code observer} is either the observer itself or the
+	 * WeakObserver for it.
+	 */
+	static private class EdtObserver<S, E> implements Observer<S, E>, Runnable
+	{
+		final Observer<? super S, ? super E> observer;
+
+		private final long frameNanos;
+
+		// Set when there is an event on its way to the EDT, so any events
+		// until then ride along with that one.
+		private final AtomicBoolean dirty = new AtomicBoolean();
+
+		private volatile S source;
+
+		private volatile E event;
+
+		// Only used on the EDT. The timer is only made the first time a
+		// notification has to wait.
+		private long lastNotification;
+
+		private Timer delay;
+
+		EdtObserver(Observer<? super S, ? super E> observer, int perSecond)
+		{
+			this.observer = observer;
+			this.frameNanos = 1000000000L / perSecond;
+		}
+
+		@Override
+		public void update(S source, E event)
+		{
+			this.source = source;
+			this.event = event;
+
+			if (dirty.compareAndSet(false, true))
+				SwingUtilities.invokeLater(this);
+		}
+
+		@Override
+		public void run()
+		{
+			long now = System.nanoTime();
+			long wait = lastNotification + frameNanos - now;
+
+			if (wait > 0)
+			{
+				if (delay == null)
+				{
+					delay = new Timer(0, new ActionListener() {
+						@Override
+						public void actionPerformed(ActionEvent e) {
+							run();
+						}
+					});
+					delay.setRepeats(false);
+				}
+
+				delay.setInitialDelay((int) Math.max(1, (wait + 999999) / 1000000));
+				delay.restart();
+				return;
+			}
+
+			lastNotification = now;
+			dirty.set(false);
+
+			observer.update(source, event);
+		}
+	}
+
+	/**
+	 * A histogram of durations in nanoseconds, in the style of HdrHistogram:
+	 * every power of two is split into SUB_BUCKETS buckets, so whatever the
+	 * duration, its bucket is at most 1/SUB_BUCKETS off. Recording is one
+	 * atomic increment and does not allocate.
+	 */
+	static class Histogram
+	{
+		static private final int SUB_BITS = 3;
+
+		static private final int SUB_BUCKETS = 1 << SUB_BITS;
+
+		private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+
+		private final AtomicLong total = new AtomicLong();
+
+		static private int bucket(long value)
+		{
+			if (value < SUB_BUCKETS)
+				return (int) Math.max(0, value);
+
+			int magnitude = 63 - Long.numberOfLeadingZeros(value);
+			int sub = (int) (value >>> (magnitude - SUB_BITS)) & (SUB_BUCKETS - 1);
+
+			return (magnitude - SUB_BITS + 1) * SUB_BUCKETS + sub;
+		}
+
+		/**
+		 * The highest value that ends up in {@code bucket}.
+		 */
+		static private long highest(int bucket)
+		{
+			if (bucket < SUB_BUCKETS)
+				return bucket;
+
+			int magnitude = bucket / SUB_BUCKETS + SUB_BITS - 1;
+			long sub = bucket % SUB_BUCKETS;
+
+			return ((SUB_BUCKETS + sub + 1) << (magnitude - SUB_BITS)) - 1;
+		}
+
+		public void record(long nanos)
+		{
+			counts.incrementAndGet(bucket(nanos));
+			total.addAndGet(nanos);
+		}
+
+		public long getCount()
+		{
+			long count = 0;
+
+			for (int i = 0; i < counts.length(); ++i)
+				count += counts.get(i);
+
+			return count;
+		}
+
+		public double getMean()
+		{
+			long count = getCount();
+			return count == 0 ? 0 : (double) total.get() / count;
+		}
+
+		/**
+		 * The duration {@code percentile} percent of the recorded ones are
+		 * shorter than (or as long as), e.g. getPercentile(99).
+		 */
+		public long getPercentile(double percentile)
+		{
+			long count = getCount();
+			long rank = (long) Math.ceil(count * percentile / 100);
+
+			for (int i = 0; i < counts.length(); ++i)
+			{
+				rank -= counts.get(i);
+
+				if (rank <= 0 && count > 0)
+					return highest(i);
+			}
+
+			return 0;
+		}
+
+		/**
+		 * How many of the recorded durations were longer than {@code nanos},
+		 * give or take a bucket.
+		 */
+		public long getCountAbove(long nanos)
+		{
+			long count = 0;
+
+			for (int i = bucket(nanos) + 1; i < counts.length(); ++i)
+				count += counts.get(i);
+
+			return count;
+		}
+
+		public long getMax()
+		{
+			for (int i = counts.length() - 1; i >= 0; --i)
+				if (counts.get(i) > 0)
+					return highest(i);
+
+			return 0;
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("%d calls, mean %.1f us, p50 %.1f us, p99 %.1f us, max %.1f us",
+				getCount(), getMean() / 1e3, getPercentile(50) / 1e3, getPercentile(99) / 1e3, getMax() / 1e3);
+		}
+	}
+
+	/**
+	 * How long the observers of one EventSource take, see instrument(). It
+	 * keeps a Histogram of the time each observer takes per call and one of
+	 * the time a whole notification takes. An observer that took longer than
+	 * the threshold for slow observers even once counts as slow: one call that
+	 * holds up the event dispatch thread for a frame is already one too many.
+	 *
+	 * For an observer with a mailbox or on the EDT, the time is the time it
+	 * took to hand it the event, not the time the observer took to deal with
+	 * it.
+	 */
+	static class Stats
+	{
+		private final ConcurrentHashMap<Observer<?, ?>, Histogram> observers =
+			new ConcurrentHashMap<Observer<?, ?>, Histogram>();
+
+		private final Histogram notifications = new Histogram();
+
+		private volatile long slowNanos = 16000000L;
+
+		private Thread dumper;
+
+		private void record(Observer<?, ?> observer, long nanos)
+		{
+			Histogram histogram = observers.get(observer);
+
+			if (histogram == null)
+			{
+				Histogram created = new Histogram();
+				histogram = observers.putIfAbsent(observer, created);
+
+				if (histogram == null)
+					histogram = created;
+			}
+
+			histogram.record(nanos);
+		}
+
+		/**
+		 * Observers slower than this (16 ms, a frame, by default) count as
+		 * slow.
+		 */
+		public void setSlowThreshold(long nanos)
+		{
+			slowNanos = nanos;
+		}
+
+		/**
+		 * The time whole notifications took.
+		 */
+		public Histogram getNotifications()
+		{
+			return notifications;
+		}
+
+		/**
+		 * The time calls to {@code observer} took, or null if it was never
+		 * called since instrumenting.
+		 */
+		public Histogram getObserver(Observer<?, ?> observer)
+		{
+			for (Map.Entry<Observer<?, ?>, Histogram> entry : observers.entrySet())
+				if (isFor(entry.getKey(), observer))
+					return entry.getValue();
+
+			return null;
+		}
+
+		public boolean isSlow(Observer<?, ?> observer)
+		{
+			Histogram histogram = getObserver(observer);
+			return histogram != null && histogram.getCountAbove(slowNanos) > 0;
+		}
+
+		static private String name(Observer<?, ?> entry)
+		{
+			if (entry instanceof Mailbox)
+				return name(((Mailbox<?, ?>) entry).observer) + " (mailbox)";
+
+			if (entry instanceof EdtObserver)
+				return name(((EdtObserver<?, ?>) entry).observer) + " (EDT)";
+
+			if (entry instanceof WeakObserver)
+			{
+				Observer<?, ?> observer = ((WeakObserver<?, ?>) entry).get();
+				return observer != null ? name(observer) + " (weak)" : "(collected)";
+			}
+
+			return entry.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(entry));
+		}
+
+		/**
+		 * Prints a line for the notifications and one per observer, the one
+		 * with the slowest call first.
+		 */
+		public void print(PrintStream out)
+		{
+			ArrayList<Map.Entry<Observer<?, ?>, Histogram>> entries =
+				new ArrayList<Map.Entry<Observer<?, ?>, Histogram>>(observers.entrySet());
+
+			Collections.sort(entries, new Comparator<Map.Entry<Observer<?, ?>, Histogram>>() {
+				@Override
+				public int compare(Map.Entry<Observer<?, ?>, Histogram> a, Map.Entry<Observer<?, ?>, Histogram> b) {
+					return Long.compare(b.getValue().getMax(), a.getValue().getMax());
+				}
+			});
+
+			out.println("notifications: " + notifications);
+
+			for (Map.Entry<Observer<?, ?>, Histogram> entry : entries)
+			{
+				long slow = entry.getValue().getCountAbove(slowNanos);
+
+				out.println((slow > 0 ? "SLOW " : "     ") + name(entry.getKey()) + ": " + entry.getValue()
+					+ (slow > 0 ? ", " + slow + " slow" : ""));
+			}
+		}
+
+		/**
+		 * Prints the stats to {@code out} every {@code millis} milliseconds,
+		 * on a thread of its own.
+		 */
+		public synchronized void startDump(final PrintStream out, final long millis)
+		{
+			if (dumper != null)
+				return;
+
+			dumper = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					while (true)
+					{
+						LockSupport.parkNanos(millis * 1000000L);
+						print(out);
+					}
+				}
+			}, "EventSource stats");
+
+			dumper.setDaemon(true);
+			dumper.start();
+		}
+	}
+
+	/**
+	 * Stands in for an observer that was added weakly. It tells the queue
+	 * of its source once the observer has been collected.
+	 */
+	static private class WeakObserver<S, E> extends WeakReference<Observer<? super S, ? super E>> implements Observer<S, E>
+	{
+		WeakObserver(Observer<? super S, ? super E> observer, ReferenceQueue<Object> queue)
+		{
+			super(observer, queue);
+		}
+
+		@Override
+		public void update(S source, E event)
+		{
+			Observer<? super S, ? super E> observer = get();
+
+			// Collected, but not removed yet.
+			if (observer != null)
+				observer.update(source, event);
+		}
+	}
+
+	static private final Observer<?, ?>[] NONE = new Observer<?, ?>[0];
+
+	@SuppressWarnings("rawtypes")
+	static private final AtomicReferenceFieldUpdater<EventSource, Observer[]> OBSERVERS =
+		AtomicReferenceFieldUpdater.newUpdater(EventSource.class, Observer[].class, "observers");
+
+	private volatile Observer<?, ?>[] observers = NONE;
+
+	// Only there if somebody wants to know, see instrument().
+	private volatile Stats stats;
+
+	// Where the weak observers end up once collected; only there once one
+	// has been added.
+	private volatile ReferenceQueue<Object> collected;
+
+	private final S self;
+
+	@SuppressWarnings("unchecked")
+	protected EventSource()
+	{
+		this.self = (S) this;
+	}
+
+	/**
+	 * Adds {@code observer}, to be notified right away on the notifying
+	 * thread. If it was already added that way, nothing changes.
+	 */
+	public void addObserver(Observer<? super S, ? super E> observer)
+	{
+		if (observer == null)
+			throw new NullPointerException();
+
+		put(observer, observer);
+	}
+
+	/**
+	 * Adds {@code observer}, to be notified through a mailbox of
+	 * {@code capacity} events that is emptied on a shared pool of threads.
+	 */
+	public void addAsyncObserver(Observer<? super S, ? super E> observer, int capacity, Overflow overflow)
+	{
+		addAsyncObserver(observer, capacity, overflow, MAILBOXES);
+	}
+
+	/**
+	 * Adds {@code observer}, to be notified through a mailbox of
+	 * {@code capacity} events that is emptied by {@code executor}.
+	 */
+	public void addAsyncObserver(Observer<? super S, ? super E> observer, int capacity, Overflow overflow, Executor executor)
+	{
+		if (observer == null)
+			throw new NullPointerException();
+
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity has to be at least 1");
+
+		put(observer, new Mailbox<S, E>(observer, capacity, overflow, executor));
+	}
+
+	/**
+	 * Adds {@code observer} like addObserver() does, but without keeping it
+	 * alive: once nothing else refers to it any more, it is removed.
+	 */
+	public void addWeakObserver(Observer<? super S, ? super E> observer)
+	{
+		if (observer == null)
+			throw new NullPointerException();
+
+		for (Observer<?, ?> entry : observers)
+			if (entry instanceof WeakObserver && ((WeakObserver<?, ?>) entry).get() == observer)
+				return;
+
+		put(observer, new WeakObserver<S, E>(observer, collected()));
+	}
+
+	private synchronized ReferenceQueue<Object> collected()
+	{
+		if (collected == null)
+			collected = new ReferenceQueue<Object>();
+
+		return collected;
+	}
+
+	/**
+	 * Adds {@code observer}, to be notified on the event dispatch thread at
+	 * most {@code perSecond} times per second, of the latest event only.
+	 */
+	public void addEdtObserver(Observer<? super S, ? super E> observer, int perSecond)
+	{
+		if (observer == null)
+			throw new NullPointerException();
+
+		if (perSecond < 1)
+			throw new IllegalArgumentException("perSecond has to be at least 1");
+
+		put(observer, new EdtObserver<S, E>(observer, perSecond));
+	}
+
+	/**
+	 * Adds {@code observer} like addEdtObserver() does, but weakly, like
+	 * addWeakObserver().
+	 */
+	public void addWeakEdtObserver(Observer<? super S, ? super E> observer, int perSecond)
+	{
+		if (observer == null)
+			throw new NullPointerException();
+
+		if (perSecond < 1)
+			throw new IllegalArgumentException("perSecond has to be at least 1");
+
+		put(observer, new EdtObserver<S, E>(new WeakObserver<S, E>(observer, collected()), perSecond));
+	}
+
+	/**
+	 * Returns the number of events thrown away or coalesced because the
+	 * mailbox of {@code observer} was full, or 0 if it has no mailbox.
+	 */
+	public long getDroppedEvents(Observer<? super S, ? super E> observer)
+	{
+		for (Observer<?, ?> o : observers)
+			if (o instanceof Mailbox && ((Mailbox<?, ?>) o).observer == observer)
+				return ((Mailbox<?, ?>) o).dropped.get();
+
+		return 0;
+	}
+
+	/**
+	 * Is {@code entry} in the array of observers there for {@code observer}?
+	 */
+	static private boolean isFor(Observer<?, ?> entry, Observer<?, ?> observer)
+	{
+		return entry == observer
+			|| entry instanceof Mailbox && ((Mailbox<?, ?>) entry).observer == observer
+			|| entry instanceof WeakObserver && ((WeakObserver<?, ?>) entry).get() == observer
+			|| entry instanceof EdtObserver && isFor(((EdtObserver<?, ?>) entry).observer, observer);
+	}
+
+	/**
+	 * Is {@code entry} there for a weak observer that has been collected?
+	 */
+	static private boolean isCollected(Observer<?, ?> entry)
+	{
+		if (entry instanceof EdtObserver)
+			entry = ((EdtObserver<?, ?>) entry).observer;
+
+		return entry instanceof WeakObserver && ((WeakObserver<?, ?>) entry).get() == null;
+	}
+
+	/**
+	 * Puts {@code entry} in the array of observers, in the place of the one
+	 * that is there for {@code observer} if there is one already.
+	 */
+	private void put(Observer<?, ?> observer, Observer<?, ?> entry)
+	{
+		while (true)
+		{
+			Observer<?, ?>[] current = observers;
+			int i = 0;
+
+			while (i < current.length && !isFor(current[i], observer))
+				i++;
+
+			// Added the same way before: leave it.
+			if (i < current.length && current[i] == entry)
+				return;
+
+			Observer<?, ?>[] next = Arrays.copyOf(current, Math.max(current.length, i + 1));
+			next[i] = entry;
+
+			if (OBSERVERS.compareAndSet(this, current, next))
+				return;
+		}
+	}
+
+	public void deleteObserver(Observer<? super S, ? super E> observer)
+	{
+		while (true)
+		{
+			Observer<?, ?>[] current = observers;
+			int i = 0;
+
+			while (i < current.length && !isFor(current[i], observer))
+				i++;
+
+			if (i == current.length)
+				return;
+
+			Observer<?, ?>[] next = current.length == 1 ? NONE : new Observer<?, ?>[current.length - 1];
+			System.arraycopy(current, 0, next, 0, i);
+			System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+
+			if (OBSERVERS.compareAndSet(this, current, next))
+			{
+				Stats stats = this.stats;
+
+				if (stats != null)
+					stats.observers.remove(current[i]);
+
+				return;
+			}
+		}
+	}
+
+	public void deleteObservers()
+	{
+		observers = NONE;
+	}
+
+	/**
+	 * Removes the weak observers that were collected, if the garbage
+	 * collector says there are any. Until then this costs next to nothing,
+	 * which is why it can be done on every notification.
+	 */
+	private void expunge()
+	{
+		ReferenceQueue<Object> collected = this.collected;
+
+		if (collected == null || collected.poll() == null)
+			return;
+
+		// Whatever else is in the queue is removed in one go as well.
+		while (collected.poll() != null)
+			;
+
+		while (true)
+		{
+			Observer<?, ?>[] current = observers;
+			Observer<?, ?>[] next = new Observer<?, ?>[current.length];
+			int live = 0;
+
+			for (Observer<?, ?> entry : current)
+				if (!isCollected(entry))
+					next[live++] = entry;
+
+			if (live == current.length)
+				return;
+
+			if (OBSERVERS.compareAndSet(this, current, live == 0 ? NONE : Arrays.copyOf(next, live)))
+			{
+				Stats stats = this.stats;
+
+				if (stats != null)
+					for (Observer<?, ?> entry : current)
+						if (isCollected(entry))
+							stats.observers.remove(entry);
+
+				return;
+			}
+		}
+	}
+
+	/**
+	 * The number of observers, not counting the weak ones that the garbage
+	 * collector reported as collected.
+	 */
+	public int countObservers()
+	{
+		expunge();
+		return observers.length;
+	}
+
+	/**
+	 * Starts measuring how long the observers take, and returns the Stats
+	 * that keep the numbers. Calling it again returns the same Stats.
+	 */
+	public synchronized Stats instrument()
+	{
+		if (stats == null)
+			stats = new Stats();
+
+		return stats;
+	}
+
+	/**
+	 * The Stats of this source, or null if instrument() was never called.
+	 */
+	public Stats getStats()
+	{
+		return stats;
+	}
+
+	/**
+	 * Tells every observer about {@code event}, on this thread.
+	 */
+	@SuppressWarnings("unchecked")
+	public void notifyObservers(E event)
+	{
+		expunge();
+
+		Stats stats = this.stats;
+
+		if (stats == null)
+		{
+			for (Observer<?, ?> observer : observers)
+				((Observer<S, E>) observer).update(self, event);
+
+			return;
+		}
+
+		long start = System.nanoTime();
+		long previous = start;
+
+		for (Observer<?, ?> observer : observers)
+		{
+			((Observer<S, E>) observer).update(self, event);
+
+			long now = System.nanoTime();
+			stats.record(observer, now - previous);
+			previous = now;
+		}
+
+		stats.notifications.record(previous - start);
+	}
+}
@@ -0,0 +1,800 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * A few rough measurements for the GridExample. These are not proper
+ * microbenchmarks, but they are good enough to see whether a change made
+ * things a lot better or a lot worse. Run it with the name of the benchmark
+ * and optionally the size of the board, e.g.
+ * {@code java GridBenchmark storage 2048}.
+ */
+class GridBenchmark
+{
+	/**
+	 * This is what every cell used to cost: a Site with its own Point and its
+	 * own Color. Only used to compare against the packed Board.
+	 */
+	static private class ObjectSite
+	{
+		boolean accessible = true;
+
+		Point location;
+
+		Color color = Color.WHITE;
+
+		ObjectSite(Point location)
+		{
+			this.location = location;
+		}
+	}
+
+	/* Storage */
+
+	static private ObjectSite[][] createObjectGrid(int size)
+	{
+		ObjectSite[][] grid = new ObjectSite[size][size];
+		Random dice = new Random(1);
+
+		for (int x = 0; x < size; ++x)
+		{
+			for (int y = 0; y < size; ++y)
+			{
+				grid[x][y] = new ObjectSite(new Point(x, y));
+
+				if (dice.nextInt(5) == 0)
+				{
+					grid[x][y].accessible = false;
+					grid[x][y].color = new Color(dice.nextInt(0x1000000));
+				}
+			}
+		}
+
+		return grid;
+	}
+
+	static private GridExample.Board createBoard(int size)
+	{
+		GridExample.Board board = new GridExample.Board(size, size);
+		Random dice = new Random(1);
+
+		for (int x = 0; x < size; ++x)
+		{
+			for (int y = 0; y < size; ++y)
+			{
+				if (dice.nextInt(5) == 0)
+				{
+					board.setAccessible(x, y, false);
+					board.setRGB(x, y, dice.nextInt(0x1000000));
+				}
+			}
+		}
+
+		return board;
+	}
+
+	static private void storageObjectGrid(int size)
+	{
+		long before = usedMemory();
+		long start = System.nanoTime();
+		ObjectSite[][] grid = createObjectGrid(size);
+		long initTime = System.nanoTime() - start;
+		long memory = usedMemory() - before;
+
+		start = System.nanoTime();
+		int checksum = 0;
+		for (int x = 0; x < size; ++x)
+			for (int y = 0; y < size; ++y)
+				if (!grid[x][y].accessible)
+					checksum += grid[x][y].color.getRed() & 1;
+		long scanTime = System.nanoTime() - start;
+
+		report("Site[][]", memory, initTime, scanTime, checksum);
+	}
+
+	static private void storageBoard(int size)
+	{
+		long before = usedMemory();
+		long start = System.nanoTime();
+		GridExample.Board board = createBoard(size);
+		long initTime = System.nanoTime() - start;
+		long memory = usedMemory() - before;
+
+		start = System.nanoTime();
+		int checksum = 0;
+		for (int y = 0; y < size; ++y)
+			for (int x = 0; x < size; ++x)
+				if (!board.isAccessible(x, y))
+					checksum += (board.getRGB(x, y) >> 16) & 1;
+		long scanTime = System.nanoTime() - start;
+
+		report("Board", memory, initTime, scanTime, checksum);
+	}
+
+	static private void storage(int size)
+	{
+		System.out.println("Board of " + size + "x" + size + " sites");
+
+		storageBoard(size);
+		storageObjectGrid(size);
+	}
+
+	/* Repainting */
+
+	static private double paintFrames(GridExample game, Graphics2D g, Rectangle clip, int frames)
+	{
+		long start = System.nanoTime();
+
+		for (int i = 0; i < frames; ++i)
+		{
+			g.setClip(clip);
+			game.paintComponent(g);
+		}
+
+		return (System.nanoTime() - start) / 1e6 / frames;
+	}
+
+	/**
+	 * Compares painting the whole board, which is what every move used to
+	 * cause, against painting only the two sites a single move touches.
+	 */
+	static private void repaint(int size)
+	{
+		System.out.println("Single move on a " + size + "x" + size + " board");
+
+		GridExample game = new GridExample(new Dimension(size, size));
+		int pixels = size * GridExample.SITE_SIZE;
+		game.setSize(pixels, pixels);
+
+		// The image does not need to cover the board, everything outside
+		// of it is still clipped and drawn, just not stored anywhere.
+		BufferedImage image = new BufferedImage(1000, 1000, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+
+		Rectangle full = new Rectangle(0, 0, pixels, pixels);
+		Rectangle dirty = new Rectangle(0, 0, 2 * GridExample.SITE_SIZE, GridExample.SITE_SIZE);
+
+		// Warm up
+		paintFrames(game, g, full, 20);
+		paintFrames(game, g, dirty, 2000);
+
+		System.out.printf("full repaint   %8.3f ms/frame%n", paintFrames(game, g, full, 50));
+		System.out.printf("dirty repaint  %8.3f ms/frame%n", paintFrames(game, g, dirty, 5000));
+
+		g.dispose();
+	}
+
+	/* Viewport */
+
+	/**
+	 * Pans a full HD viewport across a large board at different zoom levels
+	 * and reports how long each frame takes to paint. Boards this large need
+	 * some heap, e.g. {@code java -Xmx3g GridBenchmark viewport 10000}.
+	 */
+	static private void viewport(int size)
+	{
+		System.out.println("Panning across a " + size + "x" + size + " board");
+
+		GridExample game = new GridExample(new Dimension(size, size));
+		game.setSize(1920, 1080);
+
+		BufferedImage image = new BufferedImage(1920, 1080, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+
+		double[] scales = {100, 20, 4, 1, 0.5, 0.25, 0.1};
+
+		for (double scale : scales)
+		{
+			game.zoom(scale / game.getScale(), 0, 0);
+			game.scrollTo(0, 0);
+
+			int frames = 120;
+			long start = 0;
+
+			// The first half is warm up (and building the mipmap)
+			for (int i = 0; i < 2 * frames; ++i)
+			{
+				if (i == frames)
+					start = System.nanoTime();
+
+				game.scrollTo(i * 7, i * 3);
+				g.setClip(0, 0, 1920, 1080);
+				game.paintComponent(g);
+			}
+
+			double time = (System.nanoTime() - start) / 1e6 / frames;
+
+			System.out.printf("scale %6.2f px/site  %8.3f ms/frame  %6.0f fps%n",
+				game.getScale(), time, 1000 / time);
+		}
+
+		g.dispose();
+	}
+
+	/* Step */
+
+	/**
+	 * Recolours a board with 1 up to all available cores and checks that
+	 * the outcome is the same every time.
+	 */
+	static private void step(int size)
+	{
+		System.out.println("Recolouring a " + size + "x" + size + " board");
+
+		GridExample.Board board = createBoard(size);
+		int cores = Runtime.getRuntime().availableProcessors();
+		double single = 0;
+
+		// Powers of two below the number of cores, and then all of them, so
+		// odd core counts are tried as well.
+		ArrayList<Integer> counts = new ArrayList<Integer>();
+
+		for (int threads = 1; threads < cores; threads *= 2)
+			counts.add(threads);
+
+		counts.add(cores);
+
+		for (int threads : counts)
+		{
+			ForkJoinPool pool = new ForkJoinPool(threads);
+
+			for (int i = 0; i < 5; ++i)
+				board.recolor(i, pool);
+
+			int steps = 20;
+			long start = System.nanoTime();
+
+			for (int i = 0; i < steps; ++i)
+				board.recolor(42 + i, pool);
+
+			double time = (System.nanoTime() - start) / 1e6 / steps;
+
+			if (threads == 1)
+				single = time;
+
+			pool.shutdown();
+
+			System.out.printf("%3d threads  %8.2f ms/step  speedup %5.2f  checksum %08x%n",
+				threads, time, single / time, checksum(board));
+		}
+	}
+
+	/* Moves */
+
+	/**
+	 * Drives millions of random moves through GridExample.move and reports
+	 * how fast that is and how many bytes each move allocates, as counted by
+	 * the JVM for the current thread.
+	 */
+	static private void moves(int size)
+	{
+		System.out.println("Random moves on a " + size + "x" + size + " board");
+
+		GridExample game = new GridExample(new Dimension(size, size), 1);
+
+		int[] directions = new int[1 << 20];
+		SplittableRandom random = new SplittableRandom(1);
+
+		for (int i = 0; i < directions.length; ++i)
+			directions[i] = random.nextInt(4);
+
+		com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+
+		for (int round = 0; round < 5; ++round)
+		{
+			int moves = 10_000_000;
+			int[] results = new int[3];
+
+			long allocated = threads.getCurrentThreadAllocatedBytes();
+			long start = System.nanoTime();
+
+			for (int i = 0; i < moves; ++i)
+				results[game.move(directions[i & (directions.length - 1)])]++;
+
+			long time = System.nanoTime() - start;
+			allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+
+			System.out.printf("%5.1f ns/move  %6.1f M moves/s  %8.4f bytes/move  (moved %d, ate %d, blocked %d)%n",
+				(double) time / moves,
+				moves * 1e3 / time,
+				(double) allocated / moves,
+				results[GridExample.MOVED],
+				results[GridExample.ATE],
+				results[GridExample.BLOCKED]);
+		}
+	}
+
+	/* Replay */
+
+	/**
+	 * Records a long random game, writes and reads back the log, replays it
+	 * without any rendering and checks the replay ends where the original
+	 * game did.
+	 */
+	static private void replay(int size) throws IOException
+	{
+		System.out.println("Replaying a game on a " + size + "x" + size + " board");
+
+		GridExample.MoveLog log = new GridExample.MoveLog(size, size, 7);
+		GridExample.Engine game = new GridExample.Engine(log);
+		SplittableRandom random = new SplittableRandom(7);
+
+		for (int i = 0; i < 20_000_000; ++i)
+		{
+			if (i % 1_000_000 == 0)
+				game.step();
+			else
+				game.move(random.nextInt(4));
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		log.write(out);
+		System.out.printf("%d events in %.1f MB%n", log.size(), out.size() / (1024.0 * 1024.0));
+
+		GridExample.MoveLog copy = GridExample.MoveLog.read(new ByteArrayInputStream(out.toByteArray()));
+
+		for (int round = 0; round < 3; ++round)
+		{
+			long start = System.nanoTime();
+			GridExample.Engine replay = GridExample.Engine.replay(copy);
+			long time = System.nanoTime() - start;
+
+			boolean same = replay.getPlayer().getX() == game.getPlayer().getX()
+				&& replay.getPlayer().getY() == game.getPlayer().getY()
+				&& replay.getPlayer().getRGB() == game.getPlayer().getRGB()
+				&& checksum(replay.getBoard()) == checksum(game.getBoard());
+
+			System.out.printf("%8.1f ms  %6.1f M events/s  %s%n",
+				time / 1e6,
+				copy.size() * 1e3 / time,
+				same ? "same result" : "DIFFERENT result");
+		}
+	}
+
+	/* Colour index */
+
+	static private int scanEdible(GridExample.Board board, int rgb, Rectangle region)
+	{
+		int count = 0;
+
+		for (int y = 0; y < board.getHeight(); ++y)
+			for (int x = 0; x < board.getWidth(); ++x)
+				if (!board.isAccessible(x, y)
+					&& GridExample.isSameColor(board.getRGB(x, y), rgb)
+					&& (region == null || region.contains(x, y)))
+					count++;
+
+		return count;
+	}
+
+	/**
+	 * Compares asking the colour index for the sites close to a colour with
+	 * scanning the whole board for them.
+	 */
+	static private void colors(int size)
+	{
+		System.out.println("Edible sites on a " + size + "x" + size + " board");
+
+		GridExample.Engine engine = new GridExample.Engine(size, size, 3);
+		GridExample.Board board = engine.getBoard();
+
+		long start = System.nanoTime();
+		GridExample.ColorIndex index = engine.getColorIndex();
+		System.out.printf("index built in %.1f ms%n", (System.nanoTime() - start) / 1e6);
+
+		IntConsumer ignore = new IntConsumer() {
+			@Override
+			public void accept(int site) {
+			}
+		};
+
+		SplittableRandom random = new SplittableRandom(3);
+
+		// Warm up
+		for (int i = 0; i < 200; ++i)
+		{
+			index.query(random.nextInt(0x1000000), 10 + i, null, ignore);
+			index.query(random.nextInt(0x1000000), 10 + i, new Rectangle(i, i, 64, 64), ignore);
+		}
+
+		Rectangle[] regions = {null, new Rectangle(size / 4, size / 4, 64, 64)};
+		int[] distances = {50, 100, GridExample.EAT_DISTANCE};
+
+		for (Rectangle region : regions)
+		{
+			for (int distance : distances)
+			{
+				int queries = 20;
+				long scanTime = 0;
+				long indexTime = 0;
+				boolean same = true;
+
+				for (int i = 0; i < queries; ++i)
+				{
+					int rgb = random.nextInt(0x1000000);
+
+					start = System.nanoTime();
+					int scanned = distance == GridExample.EAT_DISTANCE ? scanEdible(board, rgb, region) : -1;
+					scanTime += System.nanoTime() - start;
+
+					start = System.nanoTime();
+					int found = index.query(rgb, distance, region, ignore);
+					indexTime += System.nanoTime() - start;
+
+					same &= scanned == -1 || scanned == found;
+				}
+
+				System.out.printf("%-10s distance %3d  index %8.3f ms/query%s%n",
+					region == null ? "board" : "64x64 area",
+					distance,
+					indexTime / 1e6 / queries,
+					distance == GridExample.EAT_DISTANCE
+						? String.format("  scan %8.3f ms/query  %s", scanTime / 1e6 / queries, same ? "same result" : "DIFFERENT result")
+						: "");
+			}
+		}
+	}
+
+	/* Agents */
+
+	/**
+	 * Lets 1 up to 64 threads each move their own player around one shared
+	 * Arena for a while, and reports the total number of moves per second.
+	 * Afterwards it checks the count of remaining sites against the board.
+	 */
+	static private void agents(int size) throws InterruptedException
+	{
+		System.out.println("Agents on a " + size + "x" + size + " board, "
+			+ Runtime.getRuntime().availableProcessors() + " cores");
+
+		for (int threads = 1; threads <= 64; threads *= 2)
+		{
+			final GridExample.Arena arena = new GridExample.Arena(
+				new GridExample.Engine(size, size, threads).getBoard());
+			final AtomicBoolean running = new AtomicBoolean(true);
+			final LongAdder moves = new LongAdder();
+			Thread[] agents = new Thread[threads];
+
+			for (int i = 0; i < threads; ++i)
+			{
+				final int seed = i;
+
+				agents[i] = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						SplittableRandom random = new SplittableRandom(seed);
+						GridExample.Player player = arena.join(
+							random.nextInt(size), random.nextInt(size), Color.BLACK);
+						long count = 0;
+
+						while (running.get())
+						{
+							for (int j = 0; j < 1024; ++j)
+								arena.move(player, random.nextInt(4));
+
+							count += 1024;
+						}
+
+						moves.add(count);
+					}
+				});
+			}
+
+			long start = System.nanoTime();
+
+			for (Thread agent : agents)
+				agent.start();
+
+			Thread.sleep(1000);
+			running.set(false);
+
+			for (Thread agent : agents)
+				agent.join();
+
+			long time = System.nanoTime() - start;
+
+			GridExample.Board board = arena.getBoard();
+			int remaining = 0;
+
+			for (int i = board.nextBlocked(0); i >= 0; i = board.nextBlocked(i + 1))
+				remaining++;
+
+			System.out.printf("%3d threads  %7.1f M moves/s  %s%n",
+				threads,
+				moves.sum() * 1e3 / time,
+				remaining == board.getRemainingSites() ? "consistent" : "INCONSISTENT remaining count");
+		}
+	}
+
+	/* Snapshots */
+
+	/**
+	 * Compares creating a board from scratch with saving it and opening the
+	 * saved snapshot again, and how long it takes to touch every site of the
+	 * opened board (which is when it is actually read from disk).
+	 */
+	static private void snapshot(int size) throws IOException
+	{
+		System.out.println("Snapshot of a " + size + "x" + size + " board");
+
+		File file = File.createTempFile("grid", ".snapshot");
+		file.deleteOnExit();
+
+		long start = System.nanoTime();
+		GridExample.Engine engine = new GridExample.Engine(size, size, 5);
+		System.out.printf("create  %8.1f ms%n", (System.nanoTime() - start) / 1e6);
+
+		start = System.nanoTime();
+		GridExample.Snapshot.write(file, engine.getBoard(), engine.getPlayer(), engine.getSeed());
+		System.out.printf("save    %8.1f ms  (%.1f MB)%n", (System.nanoTime() - start) / 1e6, file.length() / (1024.0 * 1024.0));
+
+		start = System.nanoTime();
+		GridExample.Engine opened = GridExample.Snapshot.read(file);
+		System.out.printf("open    %8.1f ms%n", (System.nanoTime() - start) / 1e6);
+
+		start = System.nanoTime();
+		int checksum = checksum(opened.getBoard());
+		System.out.printf("touch   %8.1f ms  %s%n",
+			(System.nanoTime() - start) / 1e6,
+			checksum == checksum(engine.getBoard())
+				&& opened.getBoard().getRemainingSites() == engine.getBoard().getRemainingSites()
+				? "same board" : "DIFFERENT board");
+	}
+
+	/* Pathfinding */
+
+	/**
+	 * Routes from random accessible sites to the nearest edible site (BFS)
+	 * and to a random site elsewhere on the board (A*). The A* routes are
+	 * checked against a plain BFS to the same site.
+	 */
+	static private void paths(int size)
+	{
+		System.out.println("Routes on a " + size + "x" + size + " board");
+
+		GridExample.Board board = new GridExample.Engine(size, size, 5).getBoard();
+		GridExample.Pathfinder pathfinder = new GridExample.Pathfinder(board);
+		SplittableRandom random = new SplittableRandom(3);
+		int[] route = new int[size * size];
+		int queries = 2000;
+		int[] from = new int[queries];
+		int[] to = new int[queries];
+		int[] near = new int[queries];
+		int[] rgb = new int[queries];
+
+		for (int i = 0; i < queries; ++i)
+		{
+			do
+				from[i] = random.nextInt(size * size);
+			while (!board.isAccessible(from[i] % size, from[i] / size));
+
+			to[i] = random.nextInt(size * size);
+			near[i] = Math.floorMod(from[i] % size + random.nextInt(-32, 33), size)
+				+ Math.floorMod(from[i] / size + random.nextInt(-32, 33), size) * size;
+			rgb[i] = board.getRGBAt(random.nextInt(size * size));
+		}
+
+		for (int round = 0; round < 3; ++round)
+		{
+			long length = 0;
+			long start = System.nanoTime();
+
+			for (int i = 0; i < queries; ++i)
+				if (pathfinder.nearestEdible(from[i], rgb[i]) >= 0)
+					length += pathfinder.path(route);
+
+			long time = System.nanoTime() - start;
+
+			System.out.printf("%-15s %8.1f queries/s  %6.1f sites/route%n",
+				"nearest edible", queries * 1e9 / time, (double) length / queries);
+		}
+
+		routes("A* nearby", pathfinder, from, near);
+		routes("A* anywhere", pathfinder, from, to);
+
+		boolean same = true;
+
+		for (int i = 0; i < 100; ++i)
+		{
+			final int target = to[i];
+			int cost = pathfinder.shortest(from[i], target);
+			int length = pathfinder.nearest(from[i], new IntPredicate() {
+				@Override
+				public boolean test(int site) {
+					return site == target;
+				}
+			}) >= 0 ? pathfinder.path(route) : -1;
+
+			same &= cost == length;
+		}
+
+		System.out.println(same ? "same lengths as BFS" : "DIFFERENT lengths than BFS");
+	}
+
+	static private void routes(String name, GridExample.Pathfinder pathfinder, int[] from, int[] to)
+	{
+		for (int round = 0; round < 3; ++round)
+		{
+			long length = 0;
+			int found = 0;
+			long start = System.nanoTime();
+
+			for (int i = 0; i < from.length; ++i)
+			{
+				int cost = pathfinder.shortest(from[i], to[i]);
+
+				if (cost >= 0)
+				{
+					length += cost;
+					found++;
+				}
+			}
+
+			long time = System.nanoTime() - start;
+
+			System.out.printf("%-15s %8.1f queries/s  %6.1f sites/route  (%d found)%n",
+				name, from.length * 1e9 / time, (double) length / Math.max(found, 1), found);
+		}
+	}
+
+	/* Regions */
+
+	/**
+	 * Eats, adds and recolours random sites while keeping the regions up to
+	 * date, and compares that with labelling the whole board again. Then it eats whole
+	 * regions. Afterwards the labels are checked against a fresh labelling.
+	 */
+	static private void regions(int size)
+	{
+		System.out.println("Regions on a " + size + "x" + size + " board");
+
+		GridExample.Board board = new GridExample.Engine(size, size, 5).getBoard();
+
+		long start = System.nanoTime();
+		GridExample.Components components = new GridExample.Components(board);
+		long rebuildTime = System.nanoTime() - start;
+
+		System.out.printf("label all    %10.3f ms  %d regions%n", rebuildTime / 1e6, components.getCount());
+
+		SplittableRandom random = new SplittableRandom(11);
+		int changes = 1000000;
+
+		start = System.nanoTime();
+
+		for (int i = 0; i < changes; ++i)
+		{
+			int x = random.nextInt(size);
+			int y = random.nextInt(size);
+
+			if (random.nextInt(4) == 0)
+			{
+				board.setRGB(x, y, random.nextInt(0x1000000));
+				components.recolored(board.index(x, y));
+				continue;
+			}
+
+			boolean accessible = random.nextInt(3) != 0;
+
+			if (board.isAccessible(x, y) == accessible)
+				continue;
+
+			board.setAccessible(x, y, accessible);
+
+			if (accessible)
+				components.removed(board.index(x, y));
+			else
+				components.added(board.index(x, y));
+		}
+
+		long time = System.nanoTime() - start;
+
+		System.out.printf("change site  %10.3f us  %.0fx faster than labelling all  %d regions%n",
+			time / 1e3 / changes, rebuildTime / (time / (double) changes), components.getCount());
+
+		final GridExample.Board eating = board;
+		int eaten = 0;
+		int regions = 0;
+
+		start = System.nanoTime();
+
+		for (int i = board.nextBlocked(0); i >= 0 && regions < 10000; i = board.nextBlocked(i + 1))
+		{
+			eaten += components.remove(i, new IntConsumer() {
+				@Override
+				public void accept(int site) {
+					eating.setAccessible(site % size, site / size, true);
+				}
+			});
+			regions++;
+		}
+
+		time = System.nanoTime() - start;
+
+		System.out.printf("eat region   %10.3f us  %.1f sites/region%n",
+			time / 1e3 / regions, (double) eaten / regions);
+
+		GridExample.Components fresh = new GridExample.Components(board);
+		Map<Integer, Integer> same = new HashMap<Integer, Integer>();
+		boolean consistent = fresh.getCount() == components.getCount();
+
+		for (int i = 0; i < size * size && consistent; ++i)
+		{
+			Integer label = same.put(components.getLabel(i), fresh.getLabel(i));
+			consistent = label == null || label == fresh.getLabel(i);
+			consistent &= components.getSize(i) == fresh.getSize(i);
+		}
+
+		System.out.println(consistent ? "same regions as labelling all" : "DIFFERENT regions than labelling all");
+	}
+
+	/* Helpers */
+
+	static private int checksum(GridExample.Board board)
+	{
+		int hash = 0;
+
+		for (int y = 0; y < board.getHeight(); ++y)
+			for (int x = 0; x < board.getWidth(); ++x)
+				hash = 31 * hash + board.getRGB(x, y);
+
+		return hash;
+	}
+
+	static private long usedMemory()
+	{
+		Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 3; ++i)
+			System.gc();
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	static private void report(String name, long memory, long initTime, long scanTime, int checksum)
+	{
+		System.out.printf("%-10s %8.1f MB  init %7.1f ms  scan %7.1f ms  (%d)%n",
+			name,
+			memory / (1024.0 * 1024.0),
+			initTime / 1e6,
+			scanTime / 1e6,
+			checksum);
+	}
+
+	static public void main(String[] args) throws IOException, InterruptedException
+	{
+		String name = args.length > 0 ? args[0] : "storage";
+		int size = args.length > 1 ? Integer.parseInt(args[1]) : 2048;
+
+		if (name.equals("storage"))
+			storage(size);
+		else if (name.equals("repaint"))
+			repaint(args.length > 1 ? size : 200);
+		else if (name.equals("viewport"))
+			viewport(args.length > 1 ? size : 10000);
+		else if (name.equals("step"))
+			step(args.length > 1 ? size : 4096);
+		else if (name.equals("moves"))
+			moves(args.length > 1 ? size : 1000);
+		else if (name.equals("replay"))
+			replay(args.length > 1 ? size : 1000);
+		else if (name.equals("colors"))
+			colors(args.length > 1 ? size : 2048);
+		else if (name.equals("agents"))
+			agents(args.length > 1 ? size : 1024);
+		else if (name.equals("snapshot"))
+			snapshot(args.length > 1 ? size : 4096);
+		else if (name.equals("paths"))
+			paths(args.length > 1 ? size : 1000);
+		else if (name.equals("regions"))
+			regions(args.length > 1 ? size : 2048);
+		else
+			System.err.println("Unknown benchmark: " + name);
+	}
+}
@@ -1,89 +1,2594 @@
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 public class GridExample extends JPanel
 {
-	protected class Site
+	/**
+	 * The board itself. Instead of keeping a Site, a Point and a Color object
+	 * for every cell, all the colours are packed as RGB ints in one array and
+	 * the accessibility is kept in a bitset. Both are indexed by
+	 * {@code y * width + x}. A set bit means the site is not accessible, so a
+	 * fresh board is completely white and accessible.
+	 *
+	 * The board also keeps count of how many sites are still inaccessible, so
+	 * nobody has to walk the whole board to find out whether the game is won.
+	 */
+	static class Board
+	{
+		// Rows per task when recolouring in parallel. This is fixed instead of
+		// based on the number of threads to keep recolor() deterministic.
+		static final int ROWS_PER_TASK = 64;
+
+		private final int width;
+
+		private final int height;
+
+		private final IntBuffer colors;
+
+		private final LongBuffer blocked;
+
+		// Anyone (a status bar, a metrics thread) can read this without taking
+		// a lock. It is atomic because in an Arena many threads change it.
+		private final AtomicInteger remaining = new AtomicInteger();
+
+		public Board(int width, int height)
+		{
+			this.width = width;
+			this.height = height;
+
+			int[] colors = new int[Math.multiplyExact(width, height)];
+			Arrays.fill(colors, 0xFFFFFF);
+
+			this.colors = IntBuffer.wrap(colors);
+			this.blocked = LongBuffer.wrap(new long[(colors.length + 63) >>> 6]);
+		}
+
+		/**
+		 * A board on top of storage that already exists, e.g. a memory-mapped
+		 * Snapshot. The buffers are used as they are, not copied, and
+		 * {@code remaining} has to match the bitset.
+		 */
+		Board(int width, int height, IntBuffer colors, LongBuffer blocked, int remaining)
+		{
+			this.width = width;
+			this.height = height;
+			this.colors = colors;
+			this.blocked = blocked;
+			this.remaining.set(remaining);
+		}
+
+		public int getWidth()
+		{
+			return width;
+		}
+
+		public int getHeight()
+		{
+			return height;
+		}
+
+		public boolean contains(int x, int y)
+		{
+			return x >= 0 && y >= 0 && x < width && y < height;
+		}
+
+		public int index(int x, int y)
+		{
+			return y * width + x;
+		}
+
+		/* Color */
+
+		public int getRGB(int x, int y)
+		{
+			return colors.get(index(x, y));
+		}
+
+		public void setRGB(int x, int y, int rgb)
+		{
+			colors.put(index(x, y), rgb & 0xFFFFFF);
+		}
+
+		/* Accessible */
+
+		public boolean isAccessible(int x, int y)
+		{
+			int i = index(x, y);
+			return (blocked.get(i >>> 6) & (1L << i)) == 0;
+		}
+
+		public void setAccessible(int x, int y, boolean accessible)
+		{
+			int i = index(x, y);
+			long mask = 1L << i;
+			long word = blocked.get(i >>> 6);
+			boolean wasAccessible = (word & mask) == 0;
+
+			// Only count real changes, setting an accessible site to
+			// accessible again should not change the count.
+			if (accessible == wasAccessible)
+				return;
+
+			if (accessible)
+			{
+				blocked.put(i >>> 6, word & ~mask);
+				remaining.decrementAndGet();
+			}
+			else
+			{
+				blocked.put(i >>> 6, word | mask);
+				remaining.incrementAndGet();
+			}
+		}
+
+		/**
+		 * Returns the index of the first inaccessible site at or after index
+		 * {@code from}, or -1 if there is none.
+		 */
+		public int nextBlocked(int from)
+		{
+			if (from >= colors.limit())
+				return -1;
+
+			int u = from >>> 6;
+			long word = blocked.get(u) & (-1L << from);
+
+			while (word == 0)
+			{
+				if (++u == blocked.limit())
+					return -1;
+
+				word = blocked.get(u);
+			}
+
+			return (u << 6) + Long.numberOfTrailingZeros(word);
+		}
+
+		/**
+		 * Gives every inaccessible site a new random colour. The board is
+		 * cut into bands of ROWS_PER_TASK rows which are recoloured in
+		 * parallel on {@code pool}. Each band gets its own random generator,
+		 * split from one seeded with {@code seed} before any work starts,
+		 * so the result depends on the seed and not on the number of threads.
+		 */
+		public void recolor(long seed, ForkJoinPool pool)
+		{
+			SplittableRandom root = new SplittableRandom(seed);
+			SplittableRandom[] streams = new SplittableRandom[(height + ROWS_PER_TASK - 1) / ROWS_PER_TASK];
+
+			for (int band = 0; band < streams.length; ++band)
+				streams[band] = root.split();
+
+			pool.invoke(new RecolorTask(streams, 0, streams.length));
+		}
+
+		private void recolorBand(SplittableRandom random, int band)
+		{
+			int from = band * ROWS_PER_TASK * width;
+			int to = Math.min(height, (band + 1) * ROWS_PER_TASK) * width;
+
+			for (int i = nextBlocked(from); i >= 0 && i < to; i = nextBlocked(i + 1))
+				colors.put(i, random.nextInt(0x1000000));
+		}
+
+		private class RecolorTask extends RecursiveAction
+		{
+			private final SplittableRandom[] streams;
+
+			private final int from;
+
+			private final int to;
+
+			public RecolorTask(SplittableRandom[] streams, int from, int to)
+			{
+				this.streams = streams;
+				this.from = from;
+				this.to = to;
+			}
+
+			@Override
+			protected void compute()
+			{
+				if (to - from == 1)
+				{
+					recolorBand(streams[from], from);
+					return;
+				}
+
+				int middle = (from + to) >>> 1;
+
+				invokeAll(
+					new RecolorTask(streams, from, middle),
+					new RecolorTask(streams, middle, to));
+			}
+		}
+
+		/**
+		 * Copies rows {@code from} up to and including {@code to} of a board
+		 * of the same size into this board.
+		 */
+		public void copyRows(Board source, int from, int to)
+		{
+			int start = from * width;
+			int end = (to + 1) * width;
+
+			copy(source.colors, colors, start, end - start);
+
+			// The bitset is copied per word, which may include a few sites of
+			// the rows around it. Those are copied from the same source, so
+			// that does no harm.
+			copy(source.blocked, blocked, start >>> 6, ((end - 1) >>> 6) - (start >>> 6) + 1);
+
+			remaining.set(source.remaining.get());
+		}
+
+		static private void copy(IntBuffer source, IntBuffer target, int start, int length)
+		{
+			IntBuffer from = source.duplicate();
+			from.position(start).limit(start + length);
+
+			IntBuffer to = target.duplicate();
+			to.position(start);
+			to.put(from);
+		}
+
+		static private void copy(LongBuffer source, LongBuffer target, int start, int length)
+		{
+			LongBuffer from = source.duplicate();
+			from.position(start).limit(start + length);
+
+			LongBuffer to = target.duplicate();
+			to.position(start);
+			to.put(from);
+		}
+
+		/**
+		 * The colour of the site at {@code index} (which is y * width + x).
+		 */
+		public int getRGBAt(int index)
+		{
+			return colors.get(index);
+		}
+
+		/**
+		 * Copies the colours of rows {@code from} up to and including
+		 * {@code to} into {@code image}, which is as large as the board.
+		 */
+		public void copyRowsTo(BufferedImage image, int from, int to)
+		{
+			if (colors.hasArray() && from == 0 && to == height - 1)
+			{
+				image.getRaster().setDataElements(0, 0, width, height, colors.array());
+				return;
+			}
+
+			int[] row = new int[width];
+			IntBuffer source = colors.duplicate();
+
+			for (int y = from; y <= to; ++y)
+			{
+				source.position(y * width);
+				source.get(row);
+				image.getRaster().setDataElements(0, y, width, 1, row);
+			}
+		}
+
+		/**
+		 * Returns the number of sites that are not accessible yet.
+		 */
+		public int getRemainingSites()
+		{
+			return remaining.get();
+		}
+	}
+
+	/**
+	 * A stack of downsampled images of the board, for when we are zoomed out
+	 * so far that one pixel on screen covers many sites. Level k has one pixel
+	 * for every 2^k by 2^k block of sites, which is the average of the four
+	 * pixels below it in level k - 1. (Level 0 would be the board itself, and
+	 * is not stored.)
+	 */
+	static class Mipmap
+	{
+		private final BufferedImage[] images;
+
+		private final int[][] pixels;
+
+		public Mipmap(Board board)
+		{
+			int count = 0;
+
+			for (int w = board.getWidth(), h = board.getHeight(); w > 1 || h > 1; w = (w + 1) / 2, h = (h + 1) / 2)
+				count++;
+
+			images = new BufferedImage[count + 1];
+			pixels = new int[count + 1][];
+
+			int width = board.getWidth();
+			int height = board.getHeight();
+
+			for (int level = 1; level <= count; ++level)
+			{
+				width = (width + 1) / 2;
+				height = (height + 1) / 2;
+
+				images[level] = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+				pixels[level] = ((DataBufferInt) images[level].getRaster().getDataBuffer()).getData();
+			}
+
+			rebuild(board);
+		}
+
+		public int getLevels()
+		{
+			return images.length - 1;
+		}
+
+		public BufferedImage getImage(int level)
+		{
+			return images[level];
+		}
+
+		/**
+		 * Recalculates every level, e.g. after step() recoloured everything.
+		 */
+		public void rebuild(Board board)
+		{
+			for (int level = 1; level <= getLevels(); ++level)
+				for (int y = 0; y < images[level].getHeight(); ++y)
+					for (int x = 0; x < images[level].getWidth(); ++x)
+						pixels[level][y * images[level].getWidth() + x] = average(board, level, x, y);
+		}
+
+		/**
+		 * Recalculates only the pixels that cover the sites from (minX, minY)
+		 * to (maxX, maxY). That rectangle halves with every level, so this is
+		 * about a third more work than the rectangle itself.
+		 */
+		public void update(Board board, int minX, int minY, int maxX, int maxY)
+		{
+			for (int level = 1; level <= getLevels(); ++level)
+			{
+				minX >>= 1;
+				minY >>= 1;
+				maxX >>= 1;
+				maxY >>= 1;
+
+				for (int y = minY; y <= maxY; ++y)
+					for (int x = minX; x <= maxX; ++x)
+						pixels[level][y * images[level].getWidth() + x] = average(board, level, x, y);
+			}
+		}
+
+		private int average(Board board, int level, int x, int y)
+		{
+			int width = level == 1 ? board.getWidth() : images[level - 1].getWidth();
+			int height = level == 1 ? board.getHeight() : images[level - 1].getHeight();
+
+			int r = 0, g = 0, b = 0, n = 0;
+
+			for (int j = 2 * y; j < Math.min(2 * y + 2, height); ++j)
+			{
+				for (int i = 2 * x; i < Math.min(2 * x + 2, width); ++i)
+				{
+					int rgb = level == 1
+						? board.getRGB(i, j)
+						: pixels[level - 1][j * width + i];
+
+					r += (rgb >> 16) & 0xFF;
+					g += (rgb >> 8) & 0xFF;
+					b += rgb & 0xFF;
+					n++;
+				}
+			}
+
+			return (r / n) << 16 | (g / n) << 8 | (b / n);
+		}
+	}
+
+	/**
+	 * Finds inaccessible sites by colour without looking at the whole board.
+	 * The RGB cube is cut into 8x8x8 buckets of 32x32x32 colours, and the
+	 * sites are stored sorted by bucket in one array. A query only looks at
+	 * the buckets that overlap the sphere around the colour it asks for, and
+	 * does not even have to compare colours for buckets that lie completely
+	 * inside it.
+	 *
+	 * Sites can be removed and added one at a time. Adding only fits in the
+	 * room removed sites left in their bucket, and rebuilds the index if there
+	 * is none. Anything else, like step() recolouring every site, needs a
+	 * rebuild(), which is linear in the number of inaccessible sites.
+	 */
+	static class ColorIndex
+	{
+		static final int BUCKET_BITS = 5;
+
+		static final int BUCKETS_PER_AXIS = 256 >> BUCKET_BITS;
+
+		private final Board board;
+
+		// Site indices sorted by bucket. Bucket b holds sites[start[b]] up
+		// to (but not including) sites[end[b]].
+		private int[] sites = new int[0];
+
+		private final int[] start = new int[BUCKETS_PER_AXIS * BUCKETS_PER_AXIS * BUCKETS_PER_AXIS + 1];
+
+		private final int[] end = new int[start.length - 1];
+
+		// For every site on the board, where it is in sites.
+		private final int[] slot;
+
+		public ColorIndex(Board board)
+		{
+			this.board = board;
+			this.slot = new int[board.getWidth() * board.getHeight()];
+			rebuild();
+		}
+
+		static int bucket(int rgb)
+		{
+			return ((rgb >> 16 + BUCKET_BITS) & (BUCKETS_PER_AXIS - 1)) * BUCKETS_PER_AXIS * BUCKETS_PER_AXIS
+				+ ((rgb >> 8 + BUCKET_BITS) & (BUCKETS_PER_AXIS - 1)) * BUCKETS_PER_AXIS
+				+ ((rgb >> BUCKET_BITS) & (BUCKETS_PER_AXIS - 1));
+		}
+
+		/**
+		 * Throws everything away and indexes all inaccessible sites again.
+		 */
+		public void rebuild()
+		{
+			if (sites.length < board.getRemainingSites())
+				sites = new int[board.getRemainingSites()];
+
+			// Count the sites per bucket, and turn that into start positions.
+			Arrays.fill(end, 0);
+
+			for (int i = board.nextBlocked(0); i >= 0; i = board.nextBlocked(i + 1))
+				end[bucket(board.getRGBAt(i))]++;
+
+			start[0] = 0;
+
+			for (int b = 0; b < end.length; ++b)
+			{
+				start[b + 1] = start[b] + end[b];
+				end[b] = start[b];
+			}
+
+			// Then put every site in its place.
+			for (int i = board.nextBlocked(0); i >= 0; i = board.nextBlocked(i + 1))
+			{
+				int b = bucket(board.getRGBAt(i));
+				slot[i] = end[b];
+				sites[end[b]++] = i;
+			}
+		}
+
+		/**
+		 * Removes the site at {@code index}, which must still have the colour
+		 * it had when it was indexed.
+		 */
+		public void remove(int index)
+		{
+			int b = bucket(board.getRGBAt(index));
+			int last = sites[--end[b]];
+
+			sites[slot[index]] = last;
+			slot[last] = slot[index];
+		}
+
+		/**
+		 * Adds the site at {@code index}, which must be inaccessible by now.
+		 */
+		public void add(int index)
+		{
+			int b = bucket(board.getRGBAt(index));
+
+			// No room left in its bucket: the rebuild picks it up.
+			if (end[b] == start[b + 1])
+			{
+				rebuild();
+				return;
+			}
+
+			slot[index] = end[b];
+			sites[end[b]++] = index;
+		}
+
+		/**
+		 * Calls {@code consumer} with the index of every indexed site with a
+		 * colour closer than {@code distance} to {@code rgb} in RGB space.
+		 * If {@code region} is not null, only sites inside it are reported.
+		 * Returns the number of sites reported. (Without a consumer, it
+		 * returns the number of sites it would have had to look at.)
+		 */
+		public int query(int rgb, int distance, Rectangle region, IntConsumer consumer)
+		{
+			// For a small region it is faster to just look at every site in it.
+			if (region != null)
+			{
+				Rectangle area = region.intersection(new Rectangle(0, 0, board.getWidth(), board.getHeight()));
+
+				if (area.isEmpty())
+					return 0;
+
+				if ((long) area.width * area.height < query(rgb, distance, null, null))
+					return scan(rgb, distance, area, consumer);
+			}
+
+			int r = (rgb >> 16) & 0xFF;
+			int g = (rgb >> 8) & 0xFF;
+			int b = rgb & 0xFF;
+			int limit = distance * distance;
+			int size = 1 << BUCKET_BITS;
+			int count = 0;
+
+			for (int br = 0; br < BUCKETS_PER_AXIS; ++br)
+			{
+				int dr = axisDistance(r, br * size, size);
+				int fr = axisFarthest(r, br * size, size);
+
+				if (dr * dr >= limit)
+					continue;
+
+				for (int bg = 0; bg < BUCKETS_PER_AXIS; ++bg)
+				{
+					int dg = axisDistance(g, bg * size, size);
+					int fg = axisFarthest(g, bg * size, size);
+
+					if (dr * dr + dg * dg >= limit)
+						continue;
+
+					for (int bb = 0; bb < BUCKETS_PER_AXIS; ++bb)
+					{
+						int db = axisDistance(b, bb * size, size);
+						int fb = axisFarthest(b, bb * size, size);
+
+						if (dr * dr + dg * dg + db * db >= limit)
+							continue;
+
+						// If even the farthest corner of the bucket is close
+						// enough, we don't need to look at the colours.
+						boolean inside = fr * fr + fg * fg + fb * fb < limit;
+						int bucket = (br * BUCKETS_PER_AXIS + bg) * BUCKETS_PER_AXIS + bb;
+
+						// Without a consumer, we are only estimating.
+						if (consumer == null)
+						{
+							count += end[bucket] - start[bucket];
+							continue;
+						}
+
+						for (int i = start[bucket]; i < end[bucket]; ++i)
+						{
+							int site = sites[i];
+
+							if (!inside && !isSameColor(board.getRGBAt(site), rgb, distance))
+								continue;
+
+							if (region != null && !region.contains(site % board.getWidth(), site / board.getWidth()))
+								continue;
+
+							consumer.accept(site);
+							count++;
+						}
+					}
+				}
+			}
+
+			return count;
+		}
+
+		private int scan(int rgb, int distance, Rectangle area, IntConsumer consumer)
+		{
+			int count = 0;
+
+			for (int y = area.y; y < area.y + area.height; ++y)
+			{
+				for (int x = area.x; x < area.x + area.width; ++x)
+				{
+					int site = board.index(x, y);
+
+					if (!board.isAccessible(x, y) && isSameColor(board.getRGBAt(site), rgb, distance))
+					{
+						consumer.accept(site);
+						count++;
+					}
+				}
+			}
+
+			return count;
+		}
+
+		static private int axisDistance(int value, int from, int size)
+		{
+			if (value < from)
+				return from - value;
+			else if (value >= from + size)
+				return value - (from + size - 1);
+			else
+				return 0;
+		}
+
+		static private int axisFarthest(int value, int from, int size)
+		{
+			return Math.max(Math.abs(value - from), Math.abs(value - (from + size - 1)));
+		}
+	}
+
+	/**
+	 * Finds shortest routes over the accessible sites of a board, for AI
+	 * players. Sites are plain ints (y * width + x) throughout, the visited
+	 * sites are a bitset, and all the buffers are kept between queries, so a
+	 * query does not create any objects. A Pathfinder is not thread-safe;
+	 * give every thread its own.
+	 *
+	 * Routes may only pass accessible sites, but may end on an inaccessible
+	 * one: that last step is the move that eats it.
+	 */
+	static class Pathfinder
+	{
+		private final Board board;
+
+		private final long[] visited;
+
+		// Where we came from to get to a site, if it is visited.
+		private final int[] parent;
+
+		// BFS queue. Every site is queued at most once.
+		private final int[] queue;
+
+		// A*: cost to get to a site, only valid if cost[site] was set in
+		// this query, i.e. if stamp[site] == query.
+		private final int[] cost;
+
+		private final int[] stamp;
+
+		private int query;
+
+		// A*: binary min-heap of (estimated total cost << 32 | estimated
+		// remaining cost) with the sites alongside. Of two equally good
+		// sites, the one closer to the destination comes first, otherwise
+		// A* spreads out over all the ties on an open board.
+		private long[] heap = new long[1024];
+
+		private int[] heapSites = new int[1024];
+
+		private int heapSize;
+
+		private int start = -1;
+
+		private int found = -1;
+
+		// nearestEdible(): the colour of the player, and one predicate for
+		// all queries that looks at it.
+		private int edibleRGB;
+
+		private final IntPredicate edible = new IntPredicate() {
+			@Override
+			public boolean test(int site) {
+				return !board.isAccessible(site % board.getWidth(), site / board.getWidth())
+					&& isSameColor(board.getRGBAt(site), edibleRGB);
+			}
+		};
+
+		public Pathfinder(Board board)
+		{
+			int sites = board.getWidth() * board.getHeight();
+
+			this.board = board;
+			this.visited = new long[(sites + 63) >>> 6];
+			this.parent = new int[sites];
+			this.queue = new int[sites];
+			this.cost = new int[sites];
+			this.stamp = new int[sites];
+		}
+
+		private boolean visit(int site, int from)
+		{
+			long mask = 1L << site;
+
+			if ((visited[site >>> 6] & mask) != 0)
+				return false;
+
+			visited[site >>> 6] |= mask;
+			parent[site] = from;
+			return true;
+		}
+
+		private void reset(int site)
+		{
+			Arrays.fill(visited, 0);
+			start = site;
+			found = -1;
+		}
+
+		/**
+		 * Breadth-first search from {@code from} to the closest site for
+		 * which {@code target} is true. Returns that site, or -1 if none can
+		 * be reached. Use path() to get the route.
+		 */
+		public int nearest(int from, IntPredicate target)
+		{
+			reset(from);
+			visit(from, -1);
+
+			int width = board.getWidth();
+			int head = 0;
+			int tail = 0;
+
+			queue[tail++] = from;
+
+			while (head < tail)
+			{
+				int site = queue[head++];
+				int x = site % width;
+				int y = site / width;
+
+				for (int direction = 0; direction < 4; ++direction)
+				{
+					int nx = x + DX[direction];
+					int ny = y + DY[direction];
+
+					if (!board.contains(nx, ny))
+						continue;
+
+					int next = site + DY[direction] * width + DX[direction];
+
+					if (!visit(next, site))
+						continue;
+
+					if (target.test(next))
+						return found = next;
+
+					if (board.isAccessible(nx, ny))
+						queue[tail++] = next;
+				}
+			}
+
+			return -1;
+		}
+
+		/**
+		 * The closest site the player at {@code from} can eat, if it has
+		 * colour {@code rgb}. See nearest().
+		 */
+		public int nearestEdible(int from, int rgb)
+		{
+			edibleRGB = rgb;
+			return nearest(from, edible);
+		}
+
+		/**
+		 * A* search from {@code from} to {@code to}, using the Manhattan
+		 * distance as estimate. Returns the length of the shortest route, or
+		 * -1 if there is none. Use path() to get the route itself.
+		 */
+		public int shortest(int from, int to)
+		{
+			reset(from);
+
+			if (++query == 0)
+			{
+				// Once every four billion queries, the stamps wrap around.
+				Arrays.fill(stamp, 0);
+				query = 1;
+			}
+
+			int width = board.getWidth();
+			int toX = to % width;
+			int toY = to / width;
+
+			// Without this, a destination walled in by obstacles costs a
+			// search of everything reachable before we find out.
+			if (to != from && isWalledIn(toX, toY, from))
+				return -1;
+
+			heapSize = 0;
+			cost[from] = 0;
+			stamp[from] = query;
+			parent[from] = -1;
+			push(from, 0, distance(from % width, from / width, toX, toY));
+
+			while (heapSize > 0)
+			{
+				int site = pop();
+
+				// Sites can be in the heap more than once, only the first
+				// (cheapest) time counts.
+				if ((visited[site >>> 6] & (1L << site)) != 0)
+					continue;
+
+				visited[site >>> 6] |= 1L << site;
+
+				if (site == to)
+				{
+					found = to;
+					return cost[to];
+				}
+
+				int x = site % width;
+				int y = site / width;
+
+				// Only accessible sites lead anywhere, apart from the start.
+				if (site != from && !board.isAccessible(x, y))
+					continue;
+
+				for (int direction = 0; direction < 4; ++direction)
+				{
+					int nx = x + DX[direction];
+					int ny = y + DY[direction];
+
+					if (!board.contains(nx, ny))
+						continue;
+
+					int next = site + DY[direction] * width + DX[direction];
+					int nextCost = cost[site] + 1;
+
+					if ((visited[next >>> 6] & (1L << next)) != 0)
+						continue;
+
+					if (stamp[next] == query && cost[next] <= nextCost)
+						continue;
+
+					// Anything but the destination has to be accessible.
+					if (next != to && !board.isAccessible(nx, ny))
+						continue;
+
+					stamp[next] = query;
+					cost[next] = nextCost;
+					parent[next] = site;
+					push(next, nextCost, distance(nx, ny, toX, toY));
+				}
+			}
+
+			return -1;
+		}
+
+		private boolean isWalledIn(int x, int y, int from)
+		{
+			int width = board.getWidth();
+
+			for (int direction = 0; direction < 4; ++direction)
+			{
+				int nx = x + DX[direction];
+				int ny = y + DY[direction];
+
+				if (board.contains(nx, ny)
+					&& (board.isAccessible(nx, ny) || ny * width + nx == from))
+					return false;
+			}
+
+			return true;
+		}
+
+		static private int distance(int x1, int y1, int x2, int y2)
+		{
+			return Math.abs(x1 - x2) + Math.abs(y1 - y2);
+		}
+
+		/**
+		 * Writes the route found by the last query into {@code route},
+		 * without the site it started at, and returns its length. Returns -1
+		 * if the last query found nothing, or if {@code route} is too short.
+		 */
+		public int path(int[] route)
+		{
+			if (found < 0)
+				return -1;
+
+			int length = 0;
+
+			for (int site = found; site != start; site = parent[site])
+				length++;
+
+			if (length > route.length)
+				return -1;
+
+			for (int site = found, i = length - 1; site != start; site = parent[site], --i)
+				route[i] = site;
+
+			return length;
+		}
+
+		/* Heap */
+
+		private void push(int site, int cost, int estimate)
+		{
+			if (heapSize == heap.length)
+			{
+				heap = Arrays.copyOf(heap, heap.length * 2);
+				heapSites = Arrays.copyOf(heapSites, heap.length);
+			}
+
+			long entry = (long) (cost + estimate) << 32 | estimate;
+			int i = heapSize++;
+
+			while (i > 0 && heap[(i - 1) >>> 1] > entry)
+			{
+				heap[i] = heap[(i - 1) >>> 1];
+				heapSites[i] = heapSites[(i - 1) >>> 1];
+				i = (i - 1) >>> 1;
+			}
+
+			heap[i] = entry;
+			heapSites[i] = site;
+		}
+
+		private int pop()
+		{
+			int site = heapSites[0];
+			long last = heap[--heapSize];
+			int lastSite = heapSites[heapSize];
+			int i = 0;
+
+			while (2 * i + 1 < heapSize)
+			{
+				int child = 2 * i + 1;
+
+				if (child + 1 < heapSize && heap[child + 1] < heap[child])
+					child++;
+
+				if (heap[child] >= last)
+					break;
+
+				heap[i] = heap[child];
+				heapSites[i] = heapSites[child];
+				i = child;
+			}
+
+			heap[i] = last;
+			heapSites[i] = lastSite;
+			return site;
+		}
+	}
+
+	/**
+	 * Keeps track of the regions of the board: groups of inaccessible sites
+	 * that touch each other, horizontally or vertically, and have the same
+	 * colour as the neighbour they touch (see isSameColor). Since the player
+	 * takes the colour of what it eats, every site of a region can be eaten
+	 * coming from a neighbour in it, so a region is what the player could
+	 * eat one site at a time. Colours drift along a region though: its two
+	 * ends need not be the same colour at all.
+	 *
+	 * Every inaccessible site has the label of its region, so looking one up
+	 * is free, and the labels are kept up to date site by site instead of
+	 * being worked out for the whole board again:
+	 *
+	 * - when a site is eaten, its region can fall apart, but only that
+	 *   region is labelled again, and only if the site had more than one
+	 *   neighbour in it;
+	 * - when a site becomes inaccessible, the regions of the neighbours of
+	 *   its colour are merged by relabelling the smaller ones into the
+	 *   largest;
+	 * - when a site changes colour, it is taken out and put back in, which
+	 *   is the two above.
+	 *
+	 * Recolouring the whole board, like step() does, needs a rebuild().
+	 */
+	static class Components
+	{
+		static private final int UNLABELLED = -2;
+
+		private final Board board;
+
+		// The region of every site, or -1 for accessible sites.
+		private final int[] labels;
+
+		// Number of sites per region. Labels of regions that are gone are
+		// kept on the free stack to be used again.
+		private int[] sizes = new int[64];
+
+		private int[] free = new int[64];
+
+		private int freeCount;
+
+		private int nextLabel;
+
+		// Like the remaining sites of a Board, this can be read from any
+		// thread.
+		private volatile int count;
+
+		private int[] queue = new int[64];
+
+		public Components(Board board)
+		{
+			this.board = board;
+			this.labels = new int[board.getWidth() * board.getHeight()];
+
+			rebuild();
+		}
+
+		/**
+		 * Labels all regions from scratch.
+		 */
+		public void rebuild()
+		{
+			Arrays.fill(labels, -1);
+			freeCount = 0;
+			nextLabel = 0;
+			count = 0;
+
+			for (int i = board.nextBlocked(0); i >= 0; i = board.nextBlocked(i + 1))
+				labels[i] = UNLABELLED;
+
+			for (int i = board.nextBlocked(0); i >= 0; i = board.nextBlocked(i + 1))
+				if (labels[i] == UNLABELLED)
+					fill(i, UNLABELLED, newLabel());
+		}
+
+		/**
+		 * Returns the number of regions.
+		 */
+		public int getCount()
+		{
+			return count;
+		}
+
+		/**
+		 * Returns the region of the site at {@code index}, or -1 if it is
+		 * accessible. Labels are only stable until the next change.
+		 */
+		public int getLabel(int index)
+		{
+			return labels[index];
+		}
+
+		/**
+		 * Returns the number of sites in the region of the site at
+		 * {@code index}, or 0 if it is accessible.
+		 */
+		public int getSize(int index)
+		{
+			return labels[index] < 0 ? 0 : sizes[labels[index]];
+		}
+
+		/**
+		 * Call after the site at {@code index} became accessible.
+		 */
+		public void removed(int index)
+		{
+			int label = labels[index];
+
+			if (label < 0)
+				return;
+
+			labels[index] = -1;
+
+			if (--sizes[label] == 0)
+			{
+				freeLabel(label);
+				return;
+			}
+
+			int first = -1;
+			boolean split = false;
+
+			for (int direction = 0; direction < 4; ++direction)
+			{
+				int next = neighbour(index, direction);
+
+				if (next < 0 || labels[next] != label)
+					continue;
+
+				if (first < 0)
+					first = next;
+				else
+					split = true;
+			}
+
+			// With only one neighbour in the region, what is left of it is
+			// still connected.
+			if (!split)
+				return;
+
+			// Each part gets a new label, and the old label is only freed
+			// afterwards, or it could come right back as a new one.
+			for (int direction = 0; direction < 4; ++direction)
+			{
+				int next = neighbour(index, direction);
+
+				if (next >= 0 && labels[next] == label)
+					fill(next, label, newLabel());
+			}
+
+			sizes[label] = 0;
+			freeLabel(label);
+		}
+
+		/**
+		 * Call after the site at {@code index} became inaccessible.
+		 */
+		public void added(int index)
+		{
+			if (labels[index] >= 0)
+				return;
+
+			int largest = -1;
+
+			for (int direction = 0; direction < 4; ++direction)
+			{
+				int next = neighbour(index, direction);
+
+				if (isConnected(index, next)
+					&& (largest < 0 || sizes[labels[next]] > sizes[largest]))
+					largest = labels[next];
+			}
+
+			if (largest < 0)
+				largest = newLabel();
+
+			labels[index] = largest;
+			sizes[largest]++;
+
+			for (int direction = 0; direction < 4; ++direction)
+			{
+				int next = neighbour(index, direction);
+
+				if (!isConnected(index, next) || labels[next] == largest)
+					continue;
+
+				int label = labels[next];
+				fill(next, label, largest);
+				sizes[label] = 0;
+				freeLabel(label);
+			}
+		}
+
+		/**
+		 * Call after the site at {@code index} changed colour. Its region
+		 * can fall apart as well as merge with others.
+		 */
+		public void recolored(int index)
+		{
+			if (labels[index] < 0)
+				return;
+
+			removed(index);
+			added(index);
+		}
+
+		/**
+		 * Takes the whole region of the site at {@code index} out, calls
+		 * {@code consumer} with every site that was in it, and returns how
+		 * many there were. This only visits the sites of the region. It does
+		 * not change the board, that is up to the consumer.
+		 */
+		public int remove(int index, IntConsumer consumer)
+		{
+			int label = labels[index];
+
+			if (label < 0)
+				return 0;
+
+			int size = collect(index, label, -1);
+
+			sizes[label] = 0;
+			freeLabel(label);
+
+			for (int i = 0; i < size; ++i)
+				consumer.accept(queue[i]);
+
+			return size;
+		}
+
+		/**
+		 * Gives every site connected to {@code start} that has label
+		 * {@code from} the label {@code to}.
+		 */
+		private void fill(int start, int from, int to)
+		{
+			sizes[to] += collect(start, from, to);
+		}
+
+		/**
+		 * Relabels the sites connected to {@code start} with label
+		 * {@code from}, and leaves them in queue. Returns how many there are.
+		 */
+		private int collect(int start, int from, int to)
+		{
+			int head = 0;
+			int tail = 0;
+
+			labels[start] = to;
+			queue[tail++] = start;
+
+			while (head < tail)
+			{
+				int site = queue[head++];
+
+				for (int direction = 0; direction < 4; ++direction)
+				{
+					int next = neighbour(site, direction);
+
+					if (next < 0 || labels[next] != from
+						|| !isSameColor(board.getRGBAt(site), board.getRGBAt(next)))
+						continue;
+
+					if (tail == queue.length)
+						queue = Arrays.copyOf(queue, queue.length * 2);
+
+					labels[next] = to;
+					queue[tail++] = next;
+				}
+			}
+
+			return tail;
+		}
+
+		/**
+		 * Is {@code next}, a neighbour of the labelled site at {@code index},
+		 * in a region and of the same colour, so that the two belong
+		 * together?
+		 */
+		private boolean isConnected(int index, int next)
+		{
+			return next >= 0 && labels[next] >= 0
+				&& isSameColor(board.getRGBAt(index), board.getRGBAt(next));
+		}
+
+		private int neighbour(int index, int direction)
+		{
+			int width = board.getWidth();
+			int x = index % width + DX[direction];
+			int y = index / width + DY[direction];
+
+			return board.contains(x, y) ? y * width + x : -1;
+		}
+
+		private int newLabel()
+		{
+			int label;
+
+			if (freeCount > 0)
+				label = free[--freeCount];
+			else
+			{
+				label = nextLabel++;
+
+				if (label == sizes.length)
+					sizes = Arrays.copyOf(sizes, sizes.length * 2);
+			}
+
+			sizes[label] = 0;
+			count++;
+			return label;
+		}
+
+		private void freeLabel(int label)
+		{
+			if (freeCount == free.length)
+				free = Arrays.copyOf(free, free.length * 2);
+
+			free[freeCount++] = label;
+			count--;
+		}
+	}
+
+	/**
+	 * All of the game without any of the drawing: the board, the player and
+	 * the rules. Nothing in here needs Swing or a display, so games can also
+	 * be played (or replayed) in batch on a server. Everything random comes
+	 * from the seed, so two engines with the same size and seed that get the
+	 * same moves and steps end up in exactly the same state.
+	 */
+	static class Engine
+	{
+		private final Board board;
+
+		private final Player player;
+
+		private final SplittableRandom dice;
+
+		private final long seed;
+
+		private final MoveLog log;
+
+		// Only built when someone asks for it, see getColorIndex().
+		private ColorIndex index;
+
+		// Same, see getComponents().
+		private Components components;
+
+		public Engine(int width, int height, long seed)
+		{
+			this(width, height, seed, null);
+		}
+
+		/**
+		 * Creates a new game that records everything that happens to it in
+		 * {@code log}, so it can be replayed later on.
+		 */
+		public Engine(MoveLog log)
+		{
+			this(log.getWidth(), log.getHeight(), log.getSeed(), log);
+		}
+
+		/**
+		 * Continues a game on an existing board, e.g. from a Snapshot. The
+		 * random generator starts from the seed again, so this game will not
+		 * step in the same way as the one that was saved would have.
+		 */
+		public Engine(Board board, Player player, long seed)
+		{
+			this.board = board;
+			this.player = player;
+			this.seed = seed;
+			this.log = null;
+			this.dice = new SplittableRandom(seed);
+		}
+
+		private Engine(int width, int height, long seed, MoveLog log)
+		{
+			this.seed = seed;
+			this.log = log;
+
+			dice = new SplittableRandom(seed);
+			board = new Board(width, height);
+			player = new Player(Color.BLACK);
+
+			for (int i = 0; i < width; ++i)
+			{
+				for (int j = 0; j < height; ++j)
+				{
+					if (dice.nextInt(5) == 0)
+					{
+						board.setAccessible(i, j, false);
+						board.setRGB(i, j, dice.nextInt(0x1000000));
+					}
+				}
+			}
+		}
+
+		public Board getBoard()
+		{
+			return board;
+		}
+
+		public Player getPlayer()
+		{
+			return player;
+		}
+
+		public long getSeed()
+		{
+			return seed;
+		}
+
+		/**
+		 * The colour index of all inaccessible sites. It is built the first
+		 * time you ask for it, and from then on move() and step() keep it up
+		 * to date.
+		 */
+		public ColorIndex getColorIndex()
+		{
+			if (index == null)
+				index = new ColorIndex(board);
+
+			return index;
+		}
+
+		/**
+		 * The regions of inaccessible sites. Like the colour index, this is
+		 * built the first time you ask for it and kept up to date after.
+		 * Building it takes time and memory in proportion to the board, so
+		 * on a large board, ask for it before the game starts rather than on
+		 * the EDT.
+		 */
+		public Components getComponents()
+		{
+			if (components == null)
+				components = new Components(board);
+
+			return components;
+		}
+
+		/**
+		 * The number of regions of inaccessible sites, or -1 if nobody asked
+		 * for the regions yet. Unlike getComponents(), this never builds them.
+		 */
+		public int getRegionCount()
+		{
+			return components != null ? components.getCount() : -1;
+		}
+
+		/**
+		 * Calls {@code consumer} with the index (y * width + x) of every site
+		 * the player could eat right now, optionally only those in
+		 * {@code region}. Returns how many there are.
+		 */
+		public int findEdibleSites(Rectangle region, IntConsumer consumer)
+		{
+			return getColorIndex().query(player.getRGB(), EAT_DISTANCE, region, consumer);
+		}
+
+		/**
+		 * Moves the player one site in {@code direction}, or lets it eat the
+		 * site there if it is not accessible. Returns BLOCKED, MOVED or ATE.
+		 * This only works on ints, so moving does not create any objects.
+		 */
+		public int move(int direction)
+		{
+			if (log != null)
+				log.add(direction);
+
+			int x = player.getX() + DX[direction];
+			int y = player.getY() + DY[direction];
+
+			if (!board.contains(x, y))
+				return BLOCKED;
+
+			if (board.isAccessible(x, y))
+			{
+				player.setLocation(x, y);
+				return MOVED;
+			}
+
+			return eatSite(x, y) ? ATE : BLOCKED;
+		}
+
+		/**
+		 * Like move(), but if the site in {@code direction} can be eaten, the
+		 * player eats the whole region it is part of in one go (see
+		 * Components), and takes the colour of that first site. Every site
+		 * eaten is added to {@code changed}, if that is not null. Returns the
+		 * number of sites eaten. This takes time in proportion to the size
+		 * of the region, not of the board.
+		 */
+		public int eatComponent(int direction, final Region changed)
+		{
+			if (log != null)
+				log.add(MoveLog.EAT_COMPONENT + direction);
+
+			int x = player.getX() + DX[direction];
+			int y = player.getY() + DY[direction];
+
+			if (!board.contains(x, y) || board.isAccessible(x, y)
+				|| !isSameColor(board.getRGB(x, y), player.getRGB()))
+				return 0;
+
+			player.setRGB(board.getRGB(x, y));
+
+			return getComponents().remove(board.index(x, y), new IntConsumer() {
+				@Override
+				public void accept(int site) {
+					int sx = site % board.getWidth();
+					int sy = site / board.getWidth();
+
+					if (index != null)
+						index.remove(site);
+
+					board.setRGB(sx, sy, 0xFFFFFF);
+					board.setAccessible(sx, sy, true);
+
+					if (changed != null)
+						changed.add(sx, sy);
+				}
+			});
+		}
+
+		public void step()
+		{
+			step(ForkJoinPool.commonPool());
+		}
+
+		public void step(ForkJoinPool pool)
+		{
+			if (log != null)
+				log.add(MoveLog.STEP);
+
+			board.recolor(dice.nextLong(), pool);
+
+			if (index != null)
+				index.rebuild();
+
+			if (components != null)
+				components.rebuild();
+		}
+
+		private boolean eatSite(int x, int y)
+		{
+			int rgb = board.getRGB(x, y);
+
+			if (!isSameColor(rgb, player.getRGB()))
+				return false;
+
+			if (index != null)
+				index.remove(board.index(x, y));
+
+			player.setRGB(rgb);
+			board.setRGB(x, y, 0xFFFFFF);
+			board.setAccessible(x, y, true);
+
+			if (components != null)
+				components.removed(board.index(x, y));
+
+			return true;
+		}
+
+		/**
+		 * Changes the colour of a site, keeping the colour index and the
+		 * regions up to date. Unlike moves, this is not recorded in the log.
+		 */
+		public void setRGB(int x, int y, int rgb)
+		{
+			int site = board.index(x, y);
+			boolean indexed = index != null && !board.isAccessible(x, y);
+
+			// The index finds a site by its colour, so it has to go before
+			// the colour changes.
+			if (indexed)
+				index.remove(site);
+
+			board.setRGB(x, y, rgb);
+
+			if (indexed)
+				index.add(site);
+
+			if (components != null)
+				components.recolored(site);
+		}
+
+		/**
+		 * Makes a site accessible or not, keeping the colour index and the
+		 * regions up to date. Unlike moves, this is not recorded in the log.
+		 */
+		public void setAccessible(int x, int y, boolean accessible)
+		{
+			if (board.isAccessible(x, y) == accessible)
+				return;
+
+			int site = board.index(x, y);
+
+			if (accessible && index != null)
+				index.remove(site);
+
+			board.setAccessible(x, y, accessible);
+
+			if (!accessible && index != null)
+				index.add(site);
+
+			if (components != null)
+			{
+				if (accessible)
+					components.removed(site);
+				else
+					components.added(site);
+			}
+		}
+
+		public boolean hasWon()
+		{
+			return board.getRemainingSites() == 0;
+		}
+
+		/**
+		 * Applies one event of a MoveLog: a direction, a STEP or
+		 * EAT_COMPONENT plus a direction.
+		 */
+		public void apply(int event)
+		{
+			if (event == MoveLog.STEP)
+				step();
+			else if (event >= MoveLog.EAT_COMPONENT)
+				eatComponent(event - MoveLog.EAT_COMPONENT, null);
+			else
+				move(event);
+		}
+
+		/**
+		 * Plays a recorded game again from the start, and returns the engine
+		 * in the state the game ended in.
+		 */
+		static public Engine replay(MoveLog log)
+		{
+			Engine engine = new Engine(log.getWidth(), log.getHeight(), log.getSeed());
+
+			for (int i = 0; i < log.size(); ++i)
+				engine.apply(log.get(i));
+
+			return engine;
+		}
+	}
+
+	/**
+	 * Everything that happened in a game, stored as compact as we can: a
+	 * header with the size of the board and the seed, followed by every move
+	 * (a direction), STEP or EAT_COMPONENT + direction as four bits, two per
+	 * byte.
+	 */
+	static class MoveLog
+	{
+		static final int STEP = 4;
+
+		static final int EAT_COMPONENT = 8;
+
+		// "GRID" in ASCII, to recognize our own files.
+		static private final int MAGIC = 0x47524944;
+
+		private final int width;
+
+		private final int height;
+
+		private final long seed;
+
+		private byte[] events;
+
+		private int size;
+
+		public MoveLog(int width, int height, long seed)
+		{
+			this.width = width;
+			this.height = height;
+			this.seed = seed;
+			this.events = new byte[1024];
+		}
+
+		public int getWidth()
+		{
+			return width;
+		}
+
+		public int getHeight()
+		{
+			return height;
+		}
+
+		public long getSeed()
+		{
+			return seed;
+		}
+
+		public int size()
+		{
+			return size;
+		}
+
+		public void add(int event)
+		{
+			if (size >>> 1 == events.length)
+				events = Arrays.copyOf(events, events.length * 2);
+
+			if ((size & 1) == 0)
+				events[size >>> 1] = (byte) event;
+			else
+				events[size >>> 1] |= (byte) (event << 4);
+
+			size++;
+		}
+
+		public int get(int i)
+		{
+			return (events[i >>> 1] >> ((i & 1) << 2)) & 0xF;
+		}
+
+		public void write(OutputStream out) throws IOException
+		{
+			DataOutputStream data = new DataOutputStream(out);
+			data.writeInt(MAGIC);
+			data.writeInt(width);
+			data.writeInt(height);
+			data.writeLong(seed);
+			data.writeInt(size);
+			data.write(events, 0, (size + 1) >>> 1);
+
+			// Flush, but don't close: out is not ours to close.
+			data.flush();
+		}
+
+		static public MoveLog read(InputStream in) throws IOException
+		{
+			DataInputStream data = new DataInputStream(in);
+
+			if (data.readInt() != MAGIC)
+				throw new IOException("Not a move log");
+
+			MoveLog log = new MoveLog(data.readInt(), data.readInt(), data.readLong());
+			log.size = data.readInt();
+			log.events = new byte[Math.max(1, (log.size + 1) >>> 1)];
+			data.readFully(log.events, 0, (log.size + 1) >>> 1);
+
+			return log;
+		}
+	}
+
+	/**
+	 * Saves and opens boards as a binary file with a fixed layout:
+	 *
+	 *   header   64 bytes: MAGIC, VERSION, width, height, the player's x, y
+	 *            and colour, the number of remaining sites and the seed
+	 *   colours  width * height ints
+	 *   bitset   (width * height + 63) / 64 longs
+	 *
+	 * all little-endian. Opening a snapshot maps the file into memory instead
+	 * of reading it, so even a huge board opens right away and the OS only
+	 * reads the parts of it that are actually used. The mapping is private,
+	 * so playing on an opened board never changes the file itself.
+	 *
+	 * Java can map at most 2 GB in one go, so the colours of a board can be
+	 * at most that large (about 23000x23000 sites).
+	 */
+	static class Snapshot
+	{
+		// "GRDS" in ASCII
+		static final int MAGIC = 0x47524453;
+
+		static final int VERSION = 1;
+
+		static final int HEADER_SIZE = 64;
+
+		/**
+		 * Whether read() maps the board. Windows does not let a file be
+		 * replaced while it is mapped, and a mapping only goes away once it
+		 * is garbage collected, so a game could never be saved over the file
+		 * it came from. There read() reads the whole board up front instead.
+		 */
+		static final boolean MAPS = !System.getProperty("os.name", "").startsWith("Windows");
+
+		/**
+		 * Writes the board and the player to {@code file}. It first writes
+		 * to a temporary file and then moves that over {@code file}, so a
+		 * crash halfway through never leaves a broken snapshot behind.
+		 */
+		static public void write(File file, Board board, Player player, long seed) throws IOException
+		{
+			Path temp = Paths.get(file.getPath() + ".tmp");
+
+			FileChannel channel = FileChannel.open(temp,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE);
+
+			try {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+				header.putInt(MAGIC);
+				header.putInt(VERSION);
+				header.putInt(board.getWidth());
+				header.putInt(board.getHeight());
+				header.putInt(player.getX());
+				header.putInt(player.getY());
+				header.putInt(player.getRGB());
+				header.putInt(board.getRemainingSites());
+				header.putLong(seed);
+				header.clear();
+				writeFully(channel, header);
+
+				ByteBuffer chunk = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+				IntBuffer colors = board.colors.duplicate();
+				colors.clear();
+
+				while (colors.hasRemaining())
+				{
+					chunk.clear();
+					IntBuffer ints = chunk.asIntBuffer();
+					int count = Math.min(ints.remaining(), colors.remaining());
+
+					IntBuffer part = colors.duplicate();
+					part.limit(part.position() + count);
+					ints.put(part);
+					colors.position(colors.position() + count);
+
+					chunk.limit(count * 4);
+					writeFully(channel, chunk);
+				}
+
+				LongBuffer blocked = board.blocked.duplicate();
+				blocked.clear();
+
+				while (blocked.hasRemaining())
+				{
+					chunk.clear();
+					LongBuffer longs = chunk.asLongBuffer();
+					int count = Math.min(longs.remaining(), blocked.remaining());
+
+					LongBuffer part = blocked.duplicate();
+					part.limit(part.position() + count);
+					longs.put(part);
+					blocked.position(blocked.position() + count);
+
+					chunk.limit(count * 8);
+					writeFully(channel, chunk);
+				}
+
+				channel.force(false);
+			}
+			finally {
+				channel.close();
+			}
+
+			Files.move(temp, file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		}
+
+		static private void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException
+		{
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		}
+
+		/**
+		 * Fills {@code colors} and then {@code blocked} from {@code channel},
+		 * starting at {@code position}, a chunk at a time like write().
+		 */
+		static private void readFully(FileChannel channel, long position, IntBuffer colors, LongBuffer blocked) throws IOException
+		{
+			ByteBuffer chunk = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+			while (colors.hasRemaining())
+			{
+				chunk.clear();
+				chunk.limit(Math.min(chunk.capacity(), colors.remaining() * 4));
+				position += readChunk(channel, position, chunk);
+				colors.put(chunk.asIntBuffer());
+			}
+
+			while (blocked.hasRemaining())
+			{
+				chunk.clear();
+				chunk.limit(Math.min(chunk.capacity(), blocked.remaining() * 8));
+				position += readChunk(channel, position, chunk);
+				blocked.put(chunk.asLongBuffer());
+			}
+
+			colors.clear();
+			blocked.clear();
+		}
+
+		static private int readChunk(FileChannel channel, long position, ByteBuffer chunk) throws IOException
+		{
+			while (chunk.hasRemaining())
+				if (channel.read(chunk, position + chunk.position()) < 0)
+					throw new IOException("Snapshot is truncated");
+
+			chunk.flip();
+			return chunk.limit();
+		}
+
+		/**
+		 * Opens a snapshot as a new game. Nothing but the header is read
+		 * here; the board itself is read from the file as it is used. (Unless
+		 * MAPS is false, see there.)
+		 */
+		static public Engine read(File file) throws IOException
+		{
+			// A private mapping needs a channel that could write, even though
+			// nothing is ever written back to the file.
+			FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+
+			try {
+				// Mapping past the end of the file would make it longer, so
+				// check the size first and read the header instead.
+				if (channel.size() < HEADER_SIZE)
+					throw new IOException("Not a snapshot: " + file);
+
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+				while (header.hasRemaining())
+					if (channel.read(header, header.position()) < 0)
+						throw new IOException("Not a snapshot: " + file);
+
+				header.flip();
+
+				if (header.getInt() != MAGIC)
+					throw new IOException("Not a snapshot: " + file);
+
+				if (header.getInt() != VERSION)
+					throw new IOException("Unknown snapshot version: " + file);
+
+				int width = header.getInt();
+				int height = header.getInt();
+				int x = header.getInt();
+				int y = header.getInt();
+				int rgb = header.getInt();
+				int remaining = header.getInt();
+				long seed = header.getLong();
+
+				long sites = (long) width * height;
+				long colorBytes = 4 * sites;
+				long bitsetBytes = 8 * ((sites + 63) / 64);
+
+				if (colorBytes > Integer.MAX_VALUE)
+					throw new IOException("Board too large to map: " + width + "x" + height);
+
+				if (channel.size() < HEADER_SIZE + colorBytes + bitsetBytes)
+					throw new IOException("Snapshot is truncated: " + file);
+
+				IntBuffer colors;
+				LongBuffer blocked;
+
+				if (MAPS)
+				{
+					colors = channel.map(FileChannel.MapMode.PRIVATE, HEADER_SIZE, colorBytes)
+						.order(ByteOrder.LITTLE_ENDIAN)
+						.asIntBuffer();
+
+					blocked = channel.map(FileChannel.MapMode.PRIVATE, HEADER_SIZE + colorBytes, bitsetBytes)
+						.order(ByteOrder.LITTLE_ENDIAN)
+						.asLongBuffer();
+				}
+				else
+				{
+					colors = IntBuffer.allocate((int) sites);
+					blocked = LongBuffer.allocate((int) (bitsetBytes / 8));
+					readFully(channel, HEADER_SIZE, colors, blocked);
+				}
+
+				Player player = new Player(new Color(rgb));
+				player.setLocation(x, y);
+
+				return new Engine(new Board(width, height, colors, blocked, remaining), player, seed);
+			}
+			finally {
+				// The mappings stay valid after the channel is closed.
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * A board shared by many players at once, for AI or network players that
+	 * each move on their own thread. There is no lock on the whole board.
+	 * Instead, every run of 64 sites (one word of the accessibility bitset)
+	 * belongs to one of STRIPES locks, and a move only takes the lock of the
+	 * site it moves to or eats. Players on different parts of the board
+	 * almost never wait for each other.
+	 *
+	 * Each Player should only be moved by one thread at a time. The count of
+	 * remaining sites is atomic, so hasWon() is always right, and exactly
+	 * one move gets to eat the last site.
+	 */
+	static class Arena
+	{
+		static final int STRIPES = 1024;
+
+		private final Board board;
+
+		private final Object[] locks = new Object[STRIPES];
+
+		public Arena(Board board)
+		{
+			this.board = board;
+
+			for (int i = 0; i < locks.length; ++i)
+				locks[i] = new Object();
+		}
+
+		public Board getBoard()
+		{
+			return board;
+		}
+
+		private Object lockFor(int x, int y)
+		{
+			return locks[(board.index(x, y) >>> 6) & (STRIPES - 1)];
+		}
+
+		/**
+		 * Adds a new player to the board at (x, y).
+		 */
+		public Player join(int x, int y, Color color)
+		{
+			Player player = new Player(color);
+			player.setLocation(x, y);
+			return player;
+		}
+
+		/**
+		 * Same as Engine.move, but for any of the players on this board.
+		 */
+		public int move(Player player, int direction)
+		{
+			int x = player.getX() + DX[direction];
+			int y = player.getY() + DY[direction];
+
+			if (!board.contains(x, y))
+				return BLOCKED;
+
+			synchronized (lockFor(x, y))
+			{
+				if (board.isAccessible(x, y))
+				{
+					player.setLocation(x, y);
+					return MOVED;
+				}
+
+				int rgb = board.getRGB(x, y);
+
+				if (!isSameColor(rgb, player.getRGB()))
+					return BLOCKED;
+
+				player.setRGB(rgb);
+				board.setRGB(x, y, 0xFFFFFF);
+				board.setAccessible(x, y, true);
+				return ATE;
+			}
+		}
+
+		public boolean hasWon()
+		{
+			return board.getRemainingSites() == 0;
+		}
+	}
+
+	/**
+	 * A rectangle of sites, used to remember which part of the board changed.
+	 * It starts out empty, and can also cover the whole board.
+	 */
+	static class Region
+	{
+		private int minX, minY, maxX, maxY;
+
+		private boolean all;
+
+		public Region()
+		{
+			clear();
+		}
+
+		public void add(int x, int y)
+		{
+			minX = Math.min(minX, x);
+			minY = Math.min(minY, y);
+			maxX = Math.max(maxX, x);
+			maxY = Math.max(maxY, y);
+		}
+
+		public void add(Region other)
+		{
+			if (other.all)
+				addAll();
+			else if (!other.isEmpty())
+			{
+				add(other.minX, other.minY);
+				add(other.maxX, other.maxY);
+			}
+		}
+
+		public void addAll()
+		{
+			all = true;
+		}
+
+		public void set(Region other)
+		{
+			clear();
+			add(other);
+		}
+
+		public void clear()
+		{
+			minX = minY = Integer.MAX_VALUE;
+			maxX = maxY = Integer.MIN_VALUE;
+			all = false;
+		}
+
+		public boolean isAll()
+		{
+			return all;
+		}
+
+		public boolean isEmpty()
+		{
+			return !all && minX > maxX;
+		}
+	}
+
+	/**
+	 * Everything the EDT needs to paint the game at one moment: its own copy
+	 * of the board and the player, which the game loop does not touch while
+	 * the EDT has it.
+	 */
+	static class Frame
+	{
+		private final Board board;
+
+		private final Player player = new Player(Color.BLACK);
+
+		// Changes on the real board that have not been copied in here yet.
+		private final Region stale = new Region();
+
+		// Sites that changed since the previous frame the EDT got.
+		private final Region changed = new Region();
+
+		// Where the player was at the start of the last tick, and how far we
+		// are into the next tick, for drawing the player in between.
+		private int previousX;
+
+		private int previousY;
+
+		private double alpha;
+
+		private long tick;
+
+		private boolean won;
+
+		private int regions;
+
+		public Frame(Board source)
+		{
+			board = new Board(source.getWidth(), source.getHeight());
+			board.copyRows(source, 0, source.getHeight() - 1);
+		}
+
+		public long getTick()
+		{
+			return tick;
+		}
+	}
+
+	/**
+	 * Runs the game on a thread of its own with a fixed time step. Every tick
+	 * it applies the moves queued by the keyboard, and every
+	 * {@code ticksPerStep} ticks it calls step(), like psychoLoop used to.
+	 *
+	 * Drawing is decoupled from the simulation: about sixty times a second
+	 * the loop copies what changed into a Frame and hands it to the EDT. There
+	 * are three frames: one the EDT shows, one waiting for the EDT, and one
+	 * the loop fills. If the EDT has not picked up the waiting frame yet, the
+	 * loop swaps it for the newer one instead of queueing more work. If the
+	 * simulation itself falls behind, it drops ticks instead of catching up.
+	 */
+	static class GameLoop implements Runnable
 	{
-		private boolean accessible;
+		static final int MAX_TICKS_PER_FRAME = 5;
+
+		private final GridExample panel;
+
+		private final Engine engine;
+
+		private final long tickNanos;
+
+		private final long frameNanos;
+
+		private final int ticksPerStep;
+
+		private final BlockingQueue<Integer> moves = new ArrayBlockingQueue<Integer>(64);
+
+		private final Frame[] frames = new Frame[3];
+
+		// The frame waiting for the EDT, and the frame the EDT is done with.
+		private final AtomicReference<Frame> pending = new AtomicReference<Frame>();
+
+		private final AtomicReference<Frame> released = new AtomicReference<Frame>();
+
+		// Only used by the loop thread
+		private Frame back;
+
+		private final Region changed = new Region();
+
+		private final Region lastChanged = new Region();
+
+		private final Region eaten = new Region();
+
+		private int previousX;
+
+		private int previousY;
+
+		// Only used by the EDT
+		private Frame shown;
+
+		private volatile boolean running;
+
+		// Statistics, only written by the loop thread.
+		private volatile long ticks;
+
+		private volatile long droppedTicks;
+
+		private volatile long publishedFrames;
+
+		private volatile long coalescedFrames;
+
+		private volatile long tickTime;
+
+		private volatile long frameTime;
+
+		public GameLoop(GridExample panel, int ticksPerSecond, int ticksPerStep)
+		{
+			this.panel = panel;
+			this.engine = panel.getEngine();
+			this.tickNanos = 1000000000L / ticksPerSecond;
+			this.frameNanos = 1000000000L / 60;
+			this.ticksPerStep = ticksPerStep;
+
+			for (int i = 0; i < frames.length; ++i)
+			{
+				frames[i] = new Frame(engine.getBoard());
+				copyPlayer(frames[i]);
+			}
+
+			shown = frames[0];
+			back = frames[1];
+			released.set(frames[2]);
+		}
+
+		public Frame getFirstFrame()
+		{
+			return frames[0];
+		}
+
+		public void start()
+		{
+			running = true;
+
+			Thread thread = new Thread(this, "GridExample game loop");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		public void stop()
+		{
+			running = false;
+		}
+
+		/**
+		 * Queues a move for the next tick: a direction, or
+		 * MoveLog.EAT_COMPONENT plus a direction. Safe to call from any
+		 * thread. If the queue is full, the move is ignored.
+		 */
+		public boolean queueMove(int direction)
+		{
+			return moves.offer(direction);
+		}
+
+		@Override
+		public void run()
+		{
+			long previous = System.nanoTime();
+			long nextFrame = previous;
+			long lag = 0;
+
+			while (running)
+			{
+				long now = System.nanoTime();
+				lag += now - previous;
+				previous = now;
+
+				for (int i = 0; lag >= tickNanos && i < MAX_TICKS_PER_FRAME; ++i)
+				{
+					tick();
+					lag -= tickNanos;
+				}
+
+				if (lag >= tickNanos)
+				{
+					droppedTicks += lag / tickNanos;
+					lag %= tickNanos;
+				}
+
+				publish((double) lag / tickNanos);
+
+				nextFrame += frameNanos;
+				long sleep = nextFrame - System.nanoTime();
+
+				if (sleep > 0)
+					LockSupport.parkNanos(sleep);
+				else
+					nextFrame = System.nanoTime();
+			}
+		}
+
+		private void tick()
+		{
+			long start = System.nanoTime();
+			Player player = engine.getPlayer();
+
+			previousX = player.getX();
+			previousY = player.getY();
+
+			Integer direction;
+
+			while ((direction = moves.poll()) != null)
+			{
+				int x = player.getX();
+				int y = player.getY();
+
+				if (direction >= MoveLog.EAT_COMPONENT)
+				{
+					eaten.clear();
+
+					if (engine.eatComponent(direction - MoveLog.EAT_COMPONENT, eaten) > 0)
+					{
+						markChanged(x, y);
+						markChanged(eaten.minX, eaten.minY);
+						markChanged(eaten.maxX, eaten.maxY);
+					}
+				}
+				else if (engine.move(direction) != BLOCKED)
+				{
+					markChanged(x, y);
+					markChanged(x + DX[direction], y + DY[direction]);
+				}
+			}
+
+			if (ticksPerStep > 0 && ticks % ticksPerStep == ticksPerStep - 1)
+			{
+				engine.step();
+
+				changed.addAll();
+
+				for (Frame frame : frames)
+					frame.stale.addAll();
+			}
+
+			ticks++;
+			tickTime += System.nanoTime() - start;
+		}
+
+		private void markChanged(int x, int y)
+		{
+			changed.add(x, y);
+
+			for (Frame frame : frames)
+				frame.stale.add(x, y);
+		}
+
+		private void copyPlayer(Frame frame)
+		{
+			Player player = engine.getPlayer();
+			frame.player.setLocation(player.getX(), player.getY());
+			frame.player.setRGB(player.getRGB());
+		}
+
+		private void publish(double alpha)
+		{
+			long start = System.nanoTime();
+
+			if (back == null)
+				back = released.getAndSet(null);
+
+			if (back == null)
+			{
+				coalescedFrames++;
+				return;
+			}
+
+			Frame frame = back;
+
+			// Bring the frame up to date, copying only the rows that changed
+			// since it was last filled.
+			if (frame.stale.isAll())
+				frame.board.copyRows(engine.getBoard(), 0, frame.board.getHeight() - 1);
+			else if (!frame.stale.isEmpty())
+				frame.board.copyRows(engine.getBoard(), frame.stale.minY, frame.stale.maxY);
 
-		private Point location;
+			frame.stale.clear();
 
-		private Color color;
+			copyPlayer(frame);
+			frame.previousX = previousX;
+			frame.previousY = previousY;
+			frame.alpha = alpha;
+			frame.tick = ticks;
+			frame.won = engine.hasWon();
+			frame.regions = engine.getRegionCount();
 
-		public Site(Point location)
+			// If the previous frame is still waiting, this one replaces it and
+			// should therefore also cover what changed in that one.
+			frame.changed.set(changed);
+
+			if (pending.get() != null)
+				frame.changed.add(lastChanged);
+
+			// While the player is gliding from one site to the next, keep
+			// repainting both.
+			if (previousX != frame.player.getX() || previousY != frame.player.getY())
+			{
+				frame.changed.add(previousX, previousY);
+				frame.changed.add(frame.player.getX(), frame.player.getY());
+			}
+
+			lastChanged.set(frame.changed);
+			changed.clear();
+
+			Frame old = pending.getAndSet(frame);
+
+			if (old != null)
+			{
+				// The EDT did not get to the previous frame yet, so we can
+				// reuse it for the next round.
+				back = old;
+				coalescedFrames++;
+			}
+			else
+			{
+				back = released.getAndSet(null);
+				SwingUtilities.invokeLater(deliver);
+			}
+
+			publishedFrames++;
+			frameTime += System.nanoTime() - start;
+		}
+
+		private final Runnable deliver = new Runnable() {
+			@Override
+			public void run() {
+				// First give back the frame we are done with, then take the
+				// newest one.
+				released.set(shown);
+				shown = pending.getAndSet(null);
+				panel.showFrame(shown);
+			}
+		};
+
+		/* Statistics */
+
+		public long getTicks()
+		{
+			return ticks;
+		}
+
+		public long getDroppedTicks()
+		{
+			return droppedTicks;
+		}
+
+		public long getPublishedFrames()
+		{
+			return publishedFrames;
+		}
+
+		public long getCoalescedFrames()
+		{
+			return coalescedFrames;
+		}
+
+		@Override
+		public String toString()
 		{
-			this.location = location;
-			this.accessible = true;
-			this.color = Color.WHITE;
+			long ticks = Math.max(1, this.ticks);
+			long frames = Math.max(1, publishedFrames);
+
+			return String.format("%d ticks (%.3f ms avg, %d dropped), %d frames (%.3f ms avg, %d coalesced)",
+				this.ticks, tickTime / 1e6 / ticks, droppedTicks,
+				publishedFrames, frameTime / 1e6 / frames, coalescedFrames);
+		}
+	}
+
+	/**
+	 * A Site is only a view on one cell of the board. It does not store
+	 * anything itself, so you can create them whenever you need one and
+	 * throw them away again.
+	 */
+	protected class Site
+	{
+		private final int x;
+
+		private final int y;
+
+		public Site(int x, int y)
+		{
+			this.x = x;
+			this.y = y;
 		}
 
 		/* Accessible */
 
 		public boolean isAccessible()
 		{
-			return accessible;
+			return board.isAccessible(x, y);
 		}
 
+		/**
+		 * Goes through the engine, like setColor(), so its colour index and
+		 * regions stay right, and then updates the images and repaints the
+		 * site. In a game loop the engine belongs to the loop thread, so only
+		 * call this on the EDT, without one.
+		 */
 		public void setAccessible(boolean accessible)
 		{
-			this.accessible = accessible;
+			engine.setAccessible(x, y, accessible);
+			sitesChanged(x, y, x, y);
+			repaintSite(x, y);
 		}
 
 		/* Color */
 
-		public Color getColor()
+		public Color getColor()
+		{
+			return new Color(board.getRGB(x, y));
+		}
+
+		public void setColor(Color color)
+		{
+			engine.setRGB(x, y, color.getRGB());
+			sitesChanged(x, y, x, y);
+			repaintSite(x, y);
+		}
+
+		/* Location */
+
+		public Point getLocation()
+		{
+			return new Point(x, y);
+		}
+	}
+
+	static protected class Player
+	{	
+		private int rgb;
+
+		private int x;
+
+		private int y;
+
+		public Player(Color color)
+		{
+			this.rgb = color.getRGB() & 0xFFFFFF;
+		}
+
+		public int getX()
 		{
-			return color;
+			return x;
 		}
 
-		public void setColor(Color color)
+		public int getY()
 		{
-			this.color = color;
+			return y;
 		}
 
-		/* Location */
+		public void setLocation(int x, int y)
+		{
+			this.x = x;
+			this.y = y;
+		}
 
 		public Point getLocation()
 		{
-			return location;
+			return new Point(x, y);
 		}
-	}
-
-	protected class Player
-	{	
-		private Color color;
 
-		private Point location;
-
-		public Player(Color color)
+		public void setLocation(Point p)
 		{
-			this.color = color;
-			this.location = new Point(0, 0);
+			setLocation(p.x, p.y);
 		}
 
-		public Point getLocation()
+		public int getRGB()
 		{
-			return location;
+			return rgb;
 		}
 
-		public void setLocation(Point p)
+		public void setRGB(int rgb)
 		{
-			location = p;
+			this.rgb = rgb & 0xFFFFFF;
 		}
 		
 		public Color getColor()
 		{
-			return color;
+			return new Color(rgb);
 		}
 
 		public void setColor(Color color)
 		{
-			this.color = color;
+			setRGB(color.getRGB());
 		}
 	}
 
@@ -92,91 +2597,382 @@ public class GridExample extends JPanel
 		@Override
 		public void keyPressed(KeyEvent e)
 		{
-			Point current = player.getLocation();
-			Point next;
+			int direction;
 
 			switch (e.getKeyCode())
 			{
 				case KeyEvent.VK_UP:
-					next = new Point((int) current.getX(), (int) current.getY() - 1);
+					direction = UP;
 					break;
 
 				case KeyEvent.VK_DOWN:
-					next = new Point((int) current.getX(), (int) current.getY() + 1);
+					direction = DOWN;
 					break;
 
 				case KeyEvent.VK_LEFT:
-					next = new Point((int) current.getX() - 1, (int) current.getY());
+					direction = LEFT;
 					break;
 
 				case KeyEvent.VK_RIGHT:
-					next = new Point((int) current.getX() + 1, (int) current.getY());
+					direction = RIGHT;
 					break;
 
 				default:
 					return;
 			}
 
-			if (isAccessible(next))
-				player.setLocation(next);
-			else if (getSite(next) != null)
-				eatSite(getSite(next));
+			// Holding shift eats a whole region at once.
+			boolean region = e.isShiftDown();
 
-			repaint();
+			// With a game loop running, the loop thread does the moving.
+			if (loop != null)
+			{
+				loop.queueMove(region ? MoveLog.EAT_COMPONENT + direction : direction);
+				return;
+			}
+
+			int x = player.getX();
+			int y = player.getY();
+
+			if (region)
+			{
+				Region eaten = eatComponent(direction);
+
+				if (!eaten.isEmpty())
+				{
+					int left = screenX(eaten.minX);
+					int top = screenY(eaten.minY);
+					repaint(left, top, screenX(eaten.maxX + 1) - left, screenY(eaten.maxY + 1) - top);
+					repaintSite(x, y);
+				}
+
+				checkForWin();
+				return;
+			}
+
+			// Only the cell the player leaves, the cell it enters and the
+			// site it eats can change, so only repaint those. (Eating also
+			// changes the colour of the player, hence the current cell.)
+			if (move(direction) != BLOCKED)
+			{
+				repaintSite(x, y);
+				repaintSite(x + DX[direction], y + DY[direction]);
+			}
+
+			revealSite(player.getX(), player.getY());
 
 			checkForWin();
 		}
 	}
 
-	private Site[][] grid;
+	/**
+	 * Drag the board around with the mouse, and zoom in and out with the
+	 * scroll wheel.
+	 */
+	protected class ViewportController extends MouseAdapter
+	{
+		private Point last;
+
+		@Override
+		public void mousePressed(MouseEvent e)
+		{
+			last = e.getPoint();
+			requestFocusInWindow();
+		}
+
+		@Override
+		public void mouseDragged(MouseEvent e)
+		{
+			scrollTo(viewX - (e.getX() - last.x), viewY - (e.getY() - last.y));
+			last = e.getPoint();
+		}
+
+		@Override
+		public void mouseWheelMoved(MouseWheelEvent e)
+		{
+			zoom(Math.pow(1.25, -e.getPreciseWheelRotation()), e.getX(), e.getY());
+		}
+	}
+
+	// Directions a player can move in, as indices into DX and DY.
+	static final int UP = 0, DOWN = 1, LEFT = 2, RIGHT = 3;
+
+	static final int[] DX = {0, 0, -1, 1};
+
+	static final int[] DY = {-1, 1, 0, 0};
+
+	// What move() did.
+	static final int BLOCKED = 0, MOVED = 1, ATE = 2;
+
+	// How close a colour has to be to the player's to eat it.
+	static final int EAT_DISTANCE = 200;
+
+	static final int SITE_SIZE = 100;
 
-	private Dimension size;
+	private Board board;
+
+	// Pixels per site, and the top-left corner of the visible part of the
+	// board in pixels. At a scale of SITE_SIZE and a view of (0, 0) the whole
+	// thing looks exactly like it did before you could zoom.
+	private double scale = SITE_SIZE;
+
+	private int viewX;
+
+	private int viewY;
+
+	private Mipmap mipmap;
+
+	private boolean mipmapDirty;
+
+	// The whole board with one pixel per site. It is only updated where
+	// sites change, and painting is a matter of letting drawImage scale the
+	// visible part up.
+	private BufferedImage boardImage;
+
+	private boolean boardImageDirty;
+
+	// The player, drawn once for the current size and colour.
+	private BufferedImage playerSprite;
+
+	private int playerSpriteRGB;
+
+	private Engine engine;
 
 	private Player player;
 
+	private GameLoop loop;
+
+	// The frame of the game loop that is painted, if there is a loop.
+	private Frame frame;
+
+	// Whether the player has been told they won.
+	private boolean won;
+
+	private Timer autosave;
+
+	private ExecutorService saver;
+
+	private Future<?> lastSave;
+
+	// Reused for every save, so autosaving does not allocate a new board.
+	// It is kept the same as the board at the last save, so a save only
+	// has to copy the rows that changed since.
+	private Board saveCopy;
+
+	// The rows that changed since the last save, and the player then.
+	private final Region unsaved = new Region();
+
+	private Player saved;
+
+	// The snapshot this game was opened from, if any, see open().
+	private File openedFrom;
+
 	/* init code */
 
 	public GridExample(Dimension size)
 	{
-		this.size = size;
+		this(size, System.nanoTime());
+	}
 
-		this.player = new Player(Color.BLACK);
-		
-		initGrid();
+	/**
+	 * Two games with the same size and seed start with the same board, and
+	 * step() changes them in the same way.
+	 */
+	public GridExample(Dimension size, long seed)
+	{
+		this(new Engine(size.width, size.height, seed));
+	}
+
+	/**
+	 * Shows (and lets you play) the game of an existing engine.
+	 */
+	public GridExample(Engine engine)
+	{
+		setEngine(engine);
 
 		setFocusable(true);
 		addKeyListener(new MoveController());
+
+		ViewportController viewport = new ViewportController();
+		addMouseListener(viewport);
+		addMouseMotionListener(viewport);
+		addMouseWheelListener(viewport);
+	}
+
+	private void setEngine(Engine engine)
+	{
+		this.engine = engine;
+		this.board = engine.getBoard();
+		this.player = engine.getPlayer();
+
+		mipmap = null;
+		boardImage = null;
+	}
+
+	public Engine getEngine()
+	{
+		return engine;
 	}
 
-	private void initGrid()
+	/**
+	 * Opens the game saved in {@code file}, see Snapshot.read. Saving to
+	 * the same file later on starts from what is in it, so the first save
+	 * does not have to copy the whole board. On Windows, where the file is
+	 * not mapped (see Snapshot.MAPS), the first save copies it all anyway.
+	 */
+	static public GridExample open(File file) throws IOException
 	{
-		grid = new Site[(int) size.getWidth()][(int) size.getHeight()];
+		GridExample game = new GridExample(Snapshot.read(file));
+
+		if (Snapshot.MAPS)
+			game.openedFrom = file;
+
+		return game;
+	}
+
+	/* Saving */
 
-		Random dice = new Random();
+	/**
+	 * Saves the board to {@code file} on a background thread. The only work
+	 * done on the EDT is copying the rows that changed since the last save,
+	 * so painting is not held up by the disk. If the previous save is not
+	 * done yet, or nothing changed since, this one is skipped and null is
+	 * returned.
+	 */
+	public Future<?> save(final File file)
+	{
+		if (lastSave != null && !lastSave.isDone())
+			return null;
 
-		for (int i = 0; i < size.getWidth(); ++i)
+		if (saveCopy == null || saveCopy.getWidth() != board.getWidth() || saveCopy.getHeight() != board.getHeight())
 		{
-			for (int j = 0; j < size.getHeight(); ++j)
+			// The file this game came from already has the board as it was
+			// then, and mapping it again reads nothing until it is used.
+			// Anything else starts from a copy of everything.
+			saveCopy = null;
+
+			if (file.equals(openedFrom))
 			{
-				grid[i][j] = new Site(new Point(i, j));
+				openedFrom = null;
 
-				if (dice.nextInt(5) == 0)
-				{
-					grid[i][j].setAccessible(false);
-					grid[i][j].setColor(getRandomColor());
+				try {
+					saveCopy = Snapshot.read(file).getBoard();
 				}
+				catch (IOException e) {
+					// Then it is a copy after all.
+				}
+			}
+
+			if (saveCopy == null || saveCopy.getWidth() != board.getWidth() || saveCopy.getHeight() != board.getHeight())
+			{
+				saveCopy = new Board(board.getWidth(), board.getHeight());
+				unsaved.addAll();
 			}
 		}
+		else if (unsaved.isEmpty() && saved != null && saved.getX() == player.getX()
+			&& saved.getY() == player.getY() && saved.getRGB() == player.getRGB())
+			return null;
+
+		final Board copy = saveCopy;
+
+		if (unsaved.isAll())
+			copy.copyRows(board, 0, board.getHeight() - 1);
+		else if (!unsaved.isEmpty())
+			copy.copyRows(board, unsaved.minY, unsaved.maxY);
+
+		unsaved.clear();
+
+		final Player state = new Player(player.getColor());
+		state.setLocation(player.getX(), player.getY());
+		saved = state;
+
+		final long seed = engine.getSeed();
+
+		if (saver == null)
+			saver = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable task) {
+					Thread thread = new Thread(task, "GridExample saver");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+		lastSave = saver.submit(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Snapshot.write(file, copy, state, seed);
+				}
+				catch (IOException e) {
+					e.printStackTrace(System.err);
+				}
+			}
+		});
+
+		return lastSave;
+	}
+
+	/**
+	 * Saves the board to {@code file} every so many seconds.
+	 */
+	public void startAutosave(final File file, int seconds)
+	{
+		if (autosave != null)
+			autosave.stop();
+
+		// A Swing timer fires on the EDT, where the board is safe to copy.
+		autosave = new Timer(seconds * 1000, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				save(file);
+			}
+		});
+
+		autosave.start();
 	}
 
-	private Color getRandomColor()
+	/**
+	 * Starts running the game on a GameLoop with 60 ticks per second, calling
+	 * step() every {@code ticksPerStep} ticks (or never if it is 0). From
+	 * then on this panel only paints the frames the loop gives it.
+	 */
+	public GameLoop startLoop(int ticksPerStep)
 	{
-		Random dice = new Random();
+		loop = new GameLoop(this, 60, ticksPerStep);
+		showFrame(loop.getFirstFrame());
+		loop.start();
+		return loop;
+	}
+
+	/**
+	 * Called on the EDT with each new frame of the game loop.
+	 */
+	private void showFrame(Frame frame)
+	{
+		this.frame = frame;
+		this.board = frame.board;
+		this.player = frame.player;
+
+		Region changed = frame.changed;
+
+		if (changed.isAll())
+		{
+			boardChanged();
+			repaint();
+		}
+		else if (!changed.isEmpty())
+		{
+			sitesChanged(changed.minX, changed.minY, changed.maxX, changed.maxY);
+
+			int left = screenX(changed.minX);
+			int top = screenY(changed.minY);
+			repaint(left, top, screenX(changed.maxX + 1) - left, screenY(changed.maxY + 1) - top);
+
+			revealSite(player.getX(), player.getY());
+		}
 
-		return new Color(
-			dice.nextFloat(),
-			dice.nextFloat(),
-			dice.nextFloat());
+		checkForWin();
 	}
 
 	/* Game logic */
@@ -184,58 +2980,114 @@ public class GridExample extends JPanel
 	public Site getSite(Point p)
 	{
 		// Don't walk out of the bounds
-		if (p.getX() < 0 || p.getY() < 0)
-			return null;
-
-		if (p.getX() >= size.getWidth() || p.getY() >= size.getHeight())
+		if (!board.contains(p.x, p.y))
 			return null;
 
 		// Test whether the grid allows to walk here.
-		return grid[(int) p.getX()][(int) p.getY()];
+		return new Site(p.x, p.y);
 	}
 
 	public boolean isAccessible(Point p)
 	{
-		return getSite(p) != null
-			&& getSite(p).isAccessible();// || isSameColor(getSite(p).getColor(), player.getColor()));
+		return isAccessible(p.x, p.y);
+	}
+
+	public boolean isAccessible(int x, int y)
+	{
+		return board.contains(x, y) && board.isAccessible(x, y);
+	}
+
+	/**
+	 * Moves the player, see Engine.move. If it ate a site, the images of the
+	 * board are brought up to date as well.
+	 */
+	public int move(int direction)
+	{
+		int result = engine.move(direction);
+
+		if (result == ATE)
+		{
+			int x = player.getX() + DX[direction];
+			int y = player.getY() + DY[direction];
+			sitesChanged(x, y, x, y);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Lets the player eat a whole region, see Engine.eatComponent. Returns
+	 * the part of the board that changed, which is empty if nothing was
+	 * eaten.
+	 */
+	public Region eatComponent(int direction)
+	{
+		Region eaten = new Region();
+
+		if (engine.eatComponent(direction, eaten) > 0)
+			sitesChanged(eaten.minX, eaten.minY, eaten.maxX, eaten.maxY);
+
+		return eaten;
+	}
+
+	/**
+	 * The number of regions of sites that still need to be eaten, or -1 if
+	 * the engine has not labelled its regions, see Engine.getComponents().
+	 */
+	public int getRemainingRegions()
+	{
+		// In a game loop, the engine belongs to the loop thread, so look at
+		// the frame instead.
+		return frame != null ? frame.regions : engine.getRegionCount();
 	}
 
 	public void step()
 	{
-		for (int i = 0; i < size.getWidth(); ++i)
-			for (int j = 0; j < size.getHeight(); ++j)
-				if (!grid[i][j].isAccessible())
-					grid[i][j].setColor(getRandomColor());
+		engine.step();
+
+		boardChanged();
 
 		repaint();
 	}
 
-	private void eatSite(Site site)
+	/**
+	 * Two colours are the same-ish if their distance in RGB space is less
+	 * than EAT_DISTANCE.
+	 */
+	static boolean isSameColor(int x, int y)
 	{
-		if (isSameColor(site.getColor(), player.getColor()))
-		{
-			player.setColor(site.getColor());
-			site.setColor(Color.WHITE);
-			site.setAccessible(true);
-		}
+		return isSameColor(x, y, EAT_DISTANCE);
 	}
 
-	private boolean isSameColor(Color x, Color y)
+	/**
+	 * Comparing the squared distance saves us the square root.
+	 */
+	static boolean isSameColor(int x, int y, int distance)
 	{
-		int r = x.getRed() - y.getRed();
-		int g = x.getGreen() - y.getGreen();
-		int b = x.getBlue() - y.getBlue();
-		double d = Math.sqrt(r * r + g * g + b * b);
+		int r = ((x >> 16) & 0xFF) - ((y >> 16) & 0xFF);
+		int g = ((x >> 8) & 0xFF) - ((y >> 8) & 0xFF);
+		int b = (x & 0xFF) - (y & 0xFF);
+
+		return r * r + g * g + b * b < distance * distance;
+	}
 
-		return d < 200;
+	/**
+	 * The number of sites that still need to be eaten. This is safe to call
+	 * from any thread.
+	 */
+	public int getRemainingSites()
+	{
+		return board.getRemainingSites();
 	}
 
 	private void checkForWin()
 	{
-		for (int i = 0; i < size.getWidth(); ++i)
-			for (int j = 0; j < size.getHeight(); ++j)
-				if (!grid[i][j].isAccessible())
-					return;
+		// In a game loop, the engine belongs to the loop thread, so look at
+		// the frame instead.
+		if (won || !(frame != null ? frame.won : engine.hasWon()))
+			return;
+
+		won = true;
 
 		JOptionPane.showMessageDialog(
 			this,
@@ -244,46 +3096,322 @@ public class GridExample extends JPanel
 			JOptionPane.ERROR_MESSAGE);
 	}
 
+	/* Viewport */
+
+	/**
+	 * Moves the visible part of the board so its top-left corner is at pixel
+	 * (x, y) of the (scaled) board, without scrolling past the edges.
+	 */
+	public void scrollTo(int x, int y)
+	{
+		int maxX = Math.max(0, (int) Math.ceil(board.getWidth() * scale) - getWidth());
+		int maxY = Math.max(0, (int) Math.ceil(board.getHeight() * scale) - getHeight());
+
+		x = Math.min(Math.max(x, 0), maxX);
+		y = Math.min(Math.max(y, 0), maxY);
+
+		if (x != viewX || y != viewY)
+		{
+			viewX = x;
+			viewY = y;
+			repaint();
+		}
+	}
+
+	/**
+	 * Zooms in (factor &gt; 1) or out, keeping the point under (anchorX,
+	 * anchorY) on screen where it is. You can zoom out until the whole board
+	 * fits in the panel, and in until sites are SITE_SIZE pixels again.
+	 */
+	public void zoom(double factor, int anchorX, int anchorY)
+	{
+		double fit = Math.min(
+			Math.max(getWidth(), 1) / (double) board.getWidth(),
+			Math.max(getHeight(), 1) / (double) board.getHeight());
+
+		double next = Math.min(Math.max(scale * factor, Math.min(fit, 1.0)), SITE_SIZE);
+
+		if (next == scale)
+			return;
+
+		double boardX = (anchorX + viewX) / scale;
+		double boardY = (anchorY + viewY) / scale;
+
+		scale = next;
+
+		// Force a repaint, even if scrollTo ends up at the same position.
+		viewX = -1;
+		scrollTo((int) Math.round(boardX * scale) - anchorX, (int) Math.round(boardY * scale) - anchorY);
+	}
+
+	public double getScale()
+	{
+		return scale;
+	}
+
+	/**
+	 * Scrolls the site at p to the middle of the screen if it is not
+	 * completely visible.
+	 */
+	private void revealSite(int x, int y)
+	{
+		int left = screenX(x);
+		int top = screenY(y);
+		int width = Math.max(1, screenX(x + 1) - left);
+		int height = Math.max(1, screenY(y + 1) - top);
+
+		if (left >= 0 && top >= 0 && left + width <= getWidth() && top + height <= getHeight())
+			return;
+
+		scrollTo(
+			viewX + left - (getWidth() - width) / 2,
+			viewY + top - (getHeight() - height) / 2);
+	}
+
 	/* Drawing code */
 
+	/**
+	 * Updates the board image and the mipmap where sites changed colour. A
+	 * few sites are set one by one; for more, the rows they are in are
+	 * copied whole, which is still only those rows.
+	 */
+	private void sitesChanged(int minX, int minY, int maxX, int maxY)
+	{
+		unsaved.add(minX, minY);
+		unsaved.add(maxX, maxY);
+
+		if (boardImage != null && !boardImageDirty)
+		{
+			if ((long) (maxX - minX + 1) * (maxY - minY + 1) > 64)
+				board.copyRowsTo(boardImage, minY, maxY);
+			else
+				for (int y = minY; y <= maxY; ++y)
+					for (int x = minX; x <= maxX; ++x)
+						boardImage.setRGB(x, y, board.getRGB(x, y));
+		}
+
+		if (mipmap != null && !mipmapDirty)
+			mipmap.update(board, minX, minY, maxX, maxY);
+	}
+
+	/**
+	 * Marks the board image and the mipmap as out of date, and the whole
+	 * board as unsaved.
+	 */
+	private void boardChanged()
+	{
+		unsaved.addAll();
+		boardImageDirty = true;
+		mipmapDirty = true;
+	}
+
+	private int screenX(int x)
+	{
+		return (int) Math.floor(x * scale) - viewX;
+	}
+
+	private int screenY(int y)
+	{
+		return (int) Math.floor(y * scale) - viewY;
+	}
+
+	private int siteX(int screenX)
+	{
+		return (int) Math.floor((screenX + viewX) / scale);
+	}
+
+	private int siteY(int screenY)
+	{
+		return (int) Math.floor((screenY + viewY) / scale);
+	}
+
+	private Rectangle getSiteBounds(int x, int y)
+	{
+		int left = screenX(x);
+		int top = screenY(y);
+
+		return new Rectangle(left,
+			top,
+			Math.max(1, screenX(x + 1) - left),
+			Math.max(1, screenY(y + 1) - top));
+	}
+
+	/**
+	 * Marks only the part of the panel covered by the site at (x, y) as
+	 * dirty. Swing merges these into one clip for the next paint.
+	 */
+	private void repaintSite(int x, int y)
+	{
+		int left = screenX(x);
+		int top = screenY(y);
+
+		repaint(left, top,
+			Math.max(1, screenX(x + 1) - left),
+			Math.max(1, screenY(y + 1) - top));
+	}
+
 	@Override
 	protected void paintComponent(Graphics g)
 	{
 		super.paintComponent(g);
 
-		for (int x = 0; x < size.getWidth(); ++x)
-			for (int y = 0; y < size.getHeight(); ++y)
-				paintSite(g, grid[x][y]);
+		// Only walk the sites that overlap the area that needs painting.
+		Rectangle clip = g.getClipBounds();
+
+		if (clip == null)
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+
+		int minX = Math.max(0, siteX(clip.x));
+		int minY = Math.max(0, siteY(clip.y));
+		int maxX = Math.min(board.getWidth() - 1, siteX(clip.x + clip.width - 1));
+		int maxY = Math.min(board.getHeight() - 1, siteY(clip.y + clip.height - 1));
+
+		if (minX <= maxX && minY <= maxY)
+		{
+			if (scale <= 0.5)
+				paintMipmap(g, minX, minY, maxX, maxY);
+			else
+				paintBoard(g, minX, minY, maxX, maxY);
+		}
 
 		paintPlayer(g);
 	}
 
-	private void paintSite(Graphics g, Site site)
+	/**
+	 * Paints the visible sites by scaling up that part of the board image,
+	 * in a single drawImage.
+	 */
+	private void paintBoard(Graphics g, int minX, int minY, int maxX, int maxY)
+	{
+		if (boardImage == null)
+		{
+			// We only ever write to it through its raster, so Java2D is
+			// still free to keep a copy of it in video memory.
+			boardImage = new BufferedImage(board.getWidth(), board.getHeight(), BufferedImage.TYPE_INT_RGB);
+			boardImageDirty = true;
+		}
+
+		if (boardImageDirty)
+		{
+			board.copyRowsTo(boardImage, 0, board.getHeight() - 1);
+			boardImageDirty = false;
+		}
+
+		g.drawImage(boardImage,
+			screenX(minX), screenY(minY), screenX(maxX + 1), screenY(maxY + 1),
+			minX, minY, maxX + 1, maxY + 1,
+			null);
+	}
+
+	/**
+	 * Zoomed out this far, even one pixel per site is too much work, so we
+	 * paint the level of the mipmap in which one pixel is close to one pixel
+	 * on screen.
+	 */
+	private void paintMipmap(Graphics g, int minX, int minY, int maxX, int maxY)
 	{
-		g.setColor(site.getColor());
+		if (mipmap == null)
+			mipmap = new Mipmap(board);
+		else if (mipmapDirty)
+			mipmap.rebuild(board);
+
+		mipmapDirty = false;
+
+		int level = 0;
+
+		while (level < mipmap.getLevels() && scale * (2 << level) <= 1.0)
+			level++;
+
+		if (level == 0)
+		{
+			paintBoard(g, minX, minY, maxX, maxY);
+			return;
+		}
+
+		int left = minX >> level;
+		int top = minY >> level;
+		int right = (maxX >> level) + 1;
+		int bottom = (maxY >> level) + 1;
 
-		g.fillRect(
-			(int) site.getLocation().getX() * 100,
-			(int) site.getLocation().getY() * 100,
-			100, 100);
+		g.drawImage(mipmap.getImage(level),
+			screenX(left << level), screenY(top << level), screenX(right << level), screenY(bottom << level),
+			left, top, right, bottom,
+			null);
 	}
 
 	private void paintPlayer(Graphics g)
 	{
-		g.setColor(player.getColor());
-		g.fillOval(
-			(int) player.getLocation().getX() * 100,
-			(int) player.getLocation().getY() * 100,
-			100, 100);
+		Rectangle bounds = getSiteBounds(player.getX(), player.getY());
+
+		// The game loop tells us how far we are between the last tick and the
+		// next, so we can draw the player between its previous site and its
+		// current one.
+		if (frame != null)
+		{
+			double x = frame.previousX + (player.getX() - frame.previousX) * frame.alpha;
+			double y = frame.previousY + (player.getY() - frame.previousY) * frame.alpha;
+			bounds.setLocation((int) Math.floor(x * scale) - viewX, (int) Math.floor(y * scale) - viewY);
+		}
+
+		// Keep the player visible, even when zoomed out a lot.
+		bounds.grow(Math.max(0, 3 - bounds.width), Math.max(0, 3 - bounds.height));
+
+		// Draw the player into a sprite once, and from then on only draw
+		// the sprite over the board.
+		if (playerSprite == null
+			|| playerSprite.getWidth() != bounds.width
+			|| playerSprite.getHeight() != bounds.height
+			|| playerSpriteRGB != player.getRGB())
+		{
+			playerSprite = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_ARGB);
+			playerSpriteRGB = player.getRGB();
+
+			Graphics sprite = playerSprite.createGraphics();
+			sprite.setColor(player.getColor());
+			sprite.fillOval(0, 0, bounds.width, bounds.height);
+			sprite.dispose();
+		}
+
+		g.drawImage(playerSprite, bounds.x, bounds.y, null);
 	}
 
 	/* Main for testing */
 
-	static public void main(String[] args)
+	static public void main(String[] args) throws IOException
 	{
+		// Replaying a recorded game does not need a window at all, e.g.
+		// java -Djava.awt.headless=true GridExample replay game.log
+		if (args.length == 2 && args[0].equals("replay"))
+		{
+			replay(args[1]);
+			return;
+		}
+
 		JFrame win = new JFrame();
 
-		GridExample game = new GridExample(new Dimension(10, 8));
+		// Optionally pass the size of the board, e.g. 10000 10000. Use the
+		// mouse to drag the board around and the scroll wheel to zoom.
+		Dimension size = args.length >= 2
+			? new Dimension(Integer.parseInt(args[0]), Integer.parseInt(args[1]))
+			: new Dimension(10, 8);
+
+		// .. and/or a file, e.g. board.grid. If it exists the board in it is
+		// opened, and either way the board is saved to it every 30 seconds.
+		File file = args.length == 1 || args.length == 3
+			? new File(args[args.length - 1])
+			: null;
+
+		GridExample game = file != null && file.exists()
+			? GridExample.open(file)
+			: new GridExample(size);
+
+		if (file != null)
+			game.startAutosave(file, 30);
+
+		// Label the regions for eating them whole now, before there is an
+		// EDT or a game loop to hold up. On a 10000x10000 board that takes a
+		// couple of seconds.
+		game.getEngine().getComponents();
 
 		win.setTitle("Awesome");
 		win.add(game);
@@ -291,17 +3419,37 @@ public class GridExample extends JPanel
 		win.setSize(1000, 800);
 		win.setVisible(true);
 
-		// psychoLoop(game);
-	}
+		// Show what is left to eat in the title, twice a second is plenty.
+		final JFrame title = win;
+		final GridExample status = game;
 
-	static private void psychoLoop(final GridExample game)
-	{
-		Timer timer = new Timer();
-		timer.scheduleAtFixedRate(new TimerTask() {
+		new Timer(500, new ActionListener() {
 			@Override
-			public void run() {
-				game.step();
+			public void actionPerformed(ActionEvent e) {
+				int regions = status.getRemainingRegions();
+
+				title.setTitle("Awesome - " + status.getRemainingSites() + " sites"
+					+ (regions >= 0 ? " in " + regions + " regions" : "") + " remaining");
 			}
-		}, new Date(), 200);
+		}).start();
+
+		// game.startLoop(12);
+	}
+
+	static private void replay(String file) throws IOException
+	{
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		MoveLog log = MoveLog.read(in);
+		in.close();
+
+		long start = System.nanoTime();
+		Engine engine = Engine.replay(log);
+		long time = System.nanoTime() - start;
+
+		System.out.printf("Replayed %d events in %.1f ms%n", log.size(), time / 1e6);
+		System.out.println("Player at " + engine.getPlayer().getLocation()
+			+ ", " + engine.getBoard().getRemainingSites() + " sites in "
+			+ engine.getComponents().getCount() + " regions remaining"
+			+ (engine.hasWon() ? ", won!" : ""));
 	}
 }
@@ -2,16 +2,23 @@ import java.util.*;
 
 class ObserverExample
 {
-	class MyModel extends Observable
+	static class MyModel extends EventSource<MyModel, MyModel.Change>
 	{
+		/**
+		 * What changed, in a notification of a MyModel.
+		 */
+		enum Change
+		{
+			VALUE
+		}
+
 		private String value;
 
 		public void setValue(String value)
 		{
 			this.value = value;
 
-			setChanged();
-			notifyObservers();
+			notifyObservers(Change.VALUE);
 		}
 
 		public String getValue()
@@ -20,17 +27,16 @@ class ObserverExample
 		}
 	}
 
-	class MyFirstView implements Observer
+	class MyFirstView implements EventSource.Observer<MyModel, MyModel.Change>
 	{
 		@Override
-		public void update(Observable source, Object arg)
+		public void update(MyModel model, MyModel.Change change)
 		{
-			MyModel model = (MyModel) source;
 			System.out.println("MyFirstView: " + model.getValue());
 		}
 	}
 
-	class MySecondView implements Observer
+	class MySecondView implements EventSource.Observer<MyModel, MyModel.Change>
 	{
 		private MyModel model;
 
@@ -41,7 +47,7 @@ class ObserverExample
 		}
 
 		@Override
-		public void update(Observable source, Object arg)
+		public void update(MyModel source, MyModel.Change change)
 		{
 			System.out.println("MySecondView: " + model.getValue());
 		}
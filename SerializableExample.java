@@ -7,8 +7,8 @@ import java.io.*;
  * its observers.
  *
  * One possible way to implement this 'propagating of events' is by letting
- * each child be Observable, and letting the parent observe each child.
- * Unfortunately Observable is not serializable, and all the registered 
+ * each child be an EventSource, and letting the parent observe each child.
+ * Unfortunately EventSource is not serializable, and all the registered 
  * observers are lost when you read the hierarchy using
  * ObjectInputStream.readObject. Therefore, I implemented my own simple parent
  * -child notifications by basing everything inside the model on Entity. Each
@@ -17,7 +17,7 @@ import java.io.*;
  * Entity) and the default behavior of an Entity when notified is to notify
  * its own parents.
  */
-class SerializableExample implements Observer
+class SerializableExample implements EventSource.Observer<SerializableExample.Model, SerializableExample.Model.Change>
 {
 	/**
 	 * A child listener can be used as a parent for an Entity and
@@ -81,8 +81,18 @@ class SerializableExample implements Observer
 	 * interface. It is also serializable, although it won't serialize all the classes
 	 * that observe it.
 	 */
-	static private class Model extends Observable implements ChildListener
+	static class Model extends EventSource<Model, Model.Change> implements ChildListener
 	{
+		/**
+		 * What changed, in a notification of the Model: something in the
+		 * house, or the whole house because another one was read.
+		 */
+		enum Change
+		{
+			HOUSE,
+			LOADED
+		}
+
 		private House house;
 
 		public Model()
@@ -107,8 +117,7 @@ class SerializableExample implements Observer
 		@Override
 		public void childChanged(Entity entity)
 		{
-			setChanged();
-			notifyObservers();
+			notifyObservers(Change.HOUSE);
 		}
 
 		/* Saving and loading of the house */
@@ -144,8 +153,7 @@ class SerializableExample implements Observer
 			house.setParent(this);
 
 			// (also notify our audience)
-			setChanged();
-			notifyObservers();
+			notifyObservers(Change.LOADED);
 		}
 	}
 
@@ -314,9 +322,9 @@ class SerializableExample implements Observer
 		// and you should be safe.
 	}
 
-	public void update(Observable source, Object arg)
+	public void update(Model source, Model.Change change)
 	{
-		System.out.println("-> " + model);
+		System.out.println("-> " + change + " " + model);
 	}
 
 	static public void main(String[] args)
@@ -9,11 +9,16 @@ class UndoExample extends JFrame
 {
 	/**
 	 * A simple model which only stores a name, but is observable. (This is also
-	 * the practical reason this is an inner class.. UndoExample already extends
-	 * JFrame and could therefore not also extend Observable.)
+	 * the practical reason this is a nested class.. UndoExample already extends
+	 * JFrame and could therefore not also extend EventSource.)
 	 */
-	private class Model extends Observable
+	static private class Model extends EventSource<Model, Model.Change>
 	{
+		enum Change
+		{
+			NAME
+		}
+
 		private String name;
 		
 		public String getName()
@@ -24,8 +29,7 @@ class UndoExample extends JFrame
 		private void setName(String name)
 		{
 			this.name = name;
-			setChanged();
-			notifyObservers();
+			notifyObservers(Change.NAME);
 		}
 	}
 
@@ -98,9 +102,9 @@ class UndoExample extends JFrame
 		});
 		
 		// .. but also listens to the model to stay up to date.
-		model.addObserver(new Observer() {
+		model.addObserver(new EventSource.Observer<Model, Model.Change>() {
 			@Override
-			public void update(Observable source, Object arg) {
+			public void update(Model source, Model.Change change) {
 				field.setText(model.getName());
 			}
 		});
@@ -121,9 +125,9 @@ class UndoExample extends JFrame
 		});
 
 		// Listens to the model to update its label and state.
-		model.addObserver(new Observer() {
+		model.addObserver(new EventSource.Observer<Model, Model.Change>() {
 			@Override
-			public void update(Observable source, Object arg) {
+			public void update(Model source, Model.Change change) {
 				undo.setText(undoManager.getUndoPresentationName());
 				undo.setEnabled(undoManager.canUndo());
 			}
@@ -138,9 +142,9 @@ class UndoExample extends JFrame
 				undoManager.redo();
 			}
 		});
-		model.addObserver(new Observer() {
+		model.addObserver(new EventSource.Observer<Model, Model.Change>() {
 			@Override
-			public void update(Observable source, Object arg) {
+			public void update(Model source, Model.Change change) {
 				redo.setText(undoManager.getRedoPresentationName());
 				redo.setEnabled(undoManager.canRedo());
 			}